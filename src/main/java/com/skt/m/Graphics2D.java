@@ -21,13 +21,22 @@ public class Graphics2D {
     }
 
     public void drawImage(int tx, int ty, Image src, int sx, int sy, int sw, int sh, int mode) {
-        BufferedImage bufferedImage = Image.getBufferedImage(src);
-        Graphics.getAWTGraphics(g).drawImage(
-                bufferedImage,
-                tx, ty, tx + sw, ty + sh,
-                sx, sy, sx + sw, sy + sh,
-                null);
+        // unlike drawRegion, this used to tolerate regions reaching past the source image
+        if (sx < 0) {
+            tx -= sx;
+            sw += sx;
+            sx = 0;
+        }
+        if (sy < 0) {
+            ty -= sy;
+            sh += sy;
+            sy = 0;
+        }
+        sw = Math.min(sw, src.getWidth() - sx);
+        sh = Math.min(sh, src.getHeight() - sy);
+        if (sw <= 0 || sh <= 0) return;
 
+        g.drawRegion(src, sx, sy, sw, sh, 0, tx, ty, Graphics.TOP | Graphics.LEFT);
     }
 
     public static Image captureLCD(int x, int y, int w, int h) {
@@ -46,8 +55,10 @@ public class Graphics2D {
     }
 
     public void setPixel(int x, int y, int color) {
-        java.awt.Graphics2D awtGraphics = Graphics.getAWTGraphics(Toolkit.graphics);
-        awtGraphics.setColor(new Color(color));
-        awtGraphics.drawRect(x, y, 1, 1);
+        Graphics graphics = Toolkit.graphics;
+        int oldColor = graphics.getColor();
+        graphics.setColor(color);
+        graphics.fillRect(x, y, 1, 1);
+        graphics.setColor(oldColor);
     }
 }
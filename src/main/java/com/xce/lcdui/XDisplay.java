@@ -12,6 +12,7 @@ public class XDisplay {
     public static int height2;
 
     public static void refresh(int x, int y, int width, int height) {
+        AppInstance.appInstance.addDamage(x, y, width, height);
         AppInstance.appInstance.blitGraphics();
     }
 
@@ -3,7 +3,9 @@ package javax.microedition.lcdui;
 import net.sktemu.ams.AppInstance;
 import net.sktemu.ams.skvm.SkvmAppInstance;
 import net.sktemu.debug.FeatureNotImplementedError;
-import net.sktemu.ui.EmuCanvas;
+import net.sktemu.ams.AmsRepaintScheduler;
+
+import java.awt.Rectangle;
 
 public abstract class Canvas extends Displayable {
     public static final int UP = 1;
@@ -49,6 +51,11 @@ public abstract class Canvas extends Displayable {
 
     private boolean isShown = false;
 
+    private final AmsRepaintScheduler.Target repaintTarget =
+            AppInstance.appInstance.getRepaintScheduler().createTarget(this::serviceRepaints);
+
+    private final Object paintLock = new Object();
+
     protected Canvas() {
 
     }
@@ -118,23 +125,41 @@ public abstract class Canvas extends Displayable {
     }
 
     public final void repaint(int x, int y, int width, int height) {
-        repaint();
+        repaintTarget.request(x, y, width, height);
     }
 
     public final void repaint() {
-        AppInstance.appInstance.runOnAppThread(this::serviceRepaints);
+        repaintTarget.requestAll();
     }
 
+    /**
+     * Paints whatever is pending right away on the calling thread, the paint queued on the app thread
+     * then finds nothing left to do.
+     */
     public final void serviceRepaints() {
         SkvmAppInstance app = (SkvmAppInstance) AppInstance.appInstance;
 
-        Display display = app.getDisplay();
-        if (display.getCurrent() != Canvas.this) {
-            return;
+        // the app thread and a guest game loop thread may both get here
+        synchronized (paintLock) {
+            Rectangle bounds = repaintTarget.takePending();
+            if (bounds == null) {
+                return;
+            }
+
+            // requests made while hidden are dropped, showing the canvas repaints it fully anyway
+            Display display = app.getDisplay();
+            if (display.getCurrent() != Canvas.this) {
+                return;
+            }
+
+            Graphics g = app.getBackbufferGraphics();
+            g.reset();
+            g.setClip(bounds.x, bounds.y, bounds.width, bounds.height);
+            paint(g);
+
+            app.addDamage(bounds.x, bounds.y, bounds.width, bounds.height);
+            app.blitGraphics();
         }
-
-        paint(new Graphics(app.getBackbufferImage()));
-        app.blitGraphics();
     }
 
     protected void showNotify() {
@@ -2,13 +2,10 @@ package javax.microedition.lcdui;
 
 import net.sktemu.ams.AppInstance;
 import net.sktemu.ams.skvm.SkvmAppInstance;
-import net.sktemu.ui.EmuCanvas;
 
 import javax.microedition.midlet.MIDlet;
 
 public class Display {
-    private final EmuCanvas emuCanvas = AppInstance.appInstance.getEmuCanvas();
-
     private Displayable current;
 
     public static Display getDisplay(MIDlet midlet) {
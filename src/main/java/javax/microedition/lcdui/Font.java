@@ -1,7 +1,9 @@
 package javax.microedition.lcdui;
 
-import com.xce.lcdui.Toolkit;
-import net.sktemu.debug.FeatureNotImplementedError;
+import net.sktemu.ui.raster.FontMetricsTable;
+import net.sktemu.ui.raster.GlyphAtlas;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Font {
     public static final int STYLE_PLAIN = 0;
@@ -20,32 +22,82 @@ public class Font {
     public static final int FONT_STATIC_TEXT = 0;
     public static final int FONT_INPUT_TEXT = 1;
 
-    private static final Font DEFAULT = new Font();
+    private static final ConcurrentHashMap<Integer, Font> fonts = new ConcurrentHashMap<>();
+
+    private static final Font DEFAULT = getFont(FACE_SYSTEM, STYLE_PLAIN, SIZE_MEDIUM);
+
+    private final int face;
+    private final int style;
+    private final int size;
+
+    private final java.awt.Font font;
+    private final FontMetricsTable metrics;
+    private final GlyphAtlas glyphAtlas;
+
+    private Font(int face, int style, int size) {
+        this.face = face;
+        this.style = style;
+        this.size = size;
 
-    private final java.awt.Font font = new java.awt.Font("Gulim", java.awt.Font.PLAIN, 12);
+        int awtStyle = java.awt.Font.PLAIN;
+        if ((style & STYLE_BOLD) != 0) awtStyle |= java.awt.Font.BOLD;
+        if ((style & STYLE_ITALIC) != 0) awtStyle |= java.awt.Font.ITALIC;
+
+        int pointSize;
+        switch (size) {
+            case SIZE_SMALL:
+                pointSize = 10;
+                break;
+            case SIZE_LARGE:
+                pointSize = 16;
+                break;
+            default:
+                pointSize = 12;
+                break;
+        }
+
+        this.font = new java.awt.Font(face == FACE_MONOSPACE ? "GulimChe" : "Gulim", awtStyle, pointSize);
+        this.metrics = new FontMetricsTable(font);
+        this.glyphAtlas = GlyphAtlas.forFont(font);
+    }
 
     public java.awt.Font getAWTFont() {
         return font;
     }
 
+    GlyphAtlas getGlyphAtlas() {
+        return glyphAtlas;
+    }
+
     public static Font getDefaultFont() {
         return DEFAULT;
     }
 
     public static Font getFont(int face, int style, int size) {
-        return DEFAULT;
+        if (face != FACE_SYSTEM && face != FACE_MONOSPACE && face != FACE_PROPORTIONAL) {
+            throw new IllegalArgumentException("Font::getFont() - invalid face " + face);
+        }
+        if ((style & ~(STYLE_BOLD | STYLE_ITALIC | STYLE_UNDERLINED)) != 0) {
+            throw new IllegalArgumentException("Font::getFont() - invalid style " + style);
+        }
+        if (size != SIZE_SMALL && size != SIZE_MEDIUM && size != SIZE_LARGE) {
+            throw new IllegalArgumentException("Font::getFont() - invalid size " + size);
+        }
+
+        // the face, style and size bits don't overlap
+        return fonts.computeIfAbsent(face | style | size, key -> new Font(face, style, size));
     }
 
     public int getStyle() {
-        return STYLE_PLAIN;
+        return style;
     }
 
     public int getSize() {
-        return SIZE_MEDIUM;
+        return size;
     }
 
     public int getFace() {
-        return FACE_SYSTEM;
+        return face;
     }
 
     public boolean isPlain() {
@@ -65,21 +117,23 @@ public class Font {
     }
 
     public int getHeight() {
-        // TODO: this will not work with multiple fonts
-
-        return Graphics.getAWTGraphics(Toolkit.graphics).getFontMetrics().getHeight();
+        return metrics.getHeight();
     }
 
     public int getBaselinePosition() {
-        throw new FeatureNotImplementedError("Font::getBaselinePosition");
+        return metrics.getAscent();
+    }
+
+    int getDescent() {
+        return metrics.getDescent();
     }
 
     public int charWidth(char ch) {
-        return Graphics.getAWTGraphics(Toolkit.graphics).getFontMetrics().charWidth(ch);
+        return metrics.charWidth(ch);
     }
 
     public int charsWidth(char[] ch, int offset, int length) {
-        return Graphics.getAWTGraphics(Toolkit.graphics).getFontMetrics().charsWidth(ch, offset, length);
+        return metrics.charsWidth(ch, offset, length);
     }
 
     public int stringWidth(String str) {
@@ -87,6 +141,10 @@ public class Font {
     }
 
     public int substringWidth(String str, int offset, int len) {
-        return charsWidth(str.toCharArray(), offset, len);
+        return metrics.charsWidth(str, offset, len);
+    }
+
+    int charsWidth(CharSequence text, int offset, int length) {
+        return metrics.charsWidth(text, offset, length);
     }
 }
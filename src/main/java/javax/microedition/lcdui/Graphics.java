@@ -1,9 +1,16 @@
 package javax.microedition.lcdui;
 
+import net.sktemu.ams.AppInstance;
 import net.sktemu.debug.FeatureNotImplementedError;
+import net.sktemu.ui.raster.GlyphAtlas;
+import net.sktemu.ui.raster.SoftRasterizer;
+import net.sktemu.ui.raster.SpriteTransforms;
+import net.sktemu.ui.raster.TextMask;
+import net.sktemu.utils.BoundedLruCache;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.nio.CharBuffer;
 
 public class Graphics {
     public static final int DOTTED = 1;
@@ -16,21 +23,68 @@ public class Graphics {
     public static final int VCENTER = 2;
 
     private final BufferedImage bufferedImage;
-    private final Graphics2D graphics2D;
-    private Rectangle clipRect;
+
+    // created on first use, most games never need anything the rasterizer can't do
+    private Graphics2D graphics2D;
+
+    // the state last applied to graphics2D, it is only synced when graphics2D is actually used
+    private int awtColor;
+    private Font awtFont;
+    private int awtTranslateX, awtTranslateY;
+    private boolean awtClipValid;
+
+    // null if the image pixel layout isn't supported, everything goes through graphics2D then
+    private final SoftRasterizer rasterizer;
+
+    private int color;
+    private Font font = Font.getDefaultFont();
+
+    // device space, x2/y2 exclusive, always within the image bounds
+    private int clipX1, clipY1, clipX2, clipY2;
 
     private int translateX, translateY;
 
     public Graphics(BufferedImage bufferedImage) {
         this.bufferedImage = bufferedImage;
-        this.graphics2D = bufferedImage.createGraphics();
-        this.clipRect = new Rectangle(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight());
+        this.rasterizer = SoftRasterizer.forImage(bufferedImage);
+        this.clipX2 = bufferedImage.getWidth();
+        this.clipY2 = bufferedImage.getHeight();
+    }
+
+    private Graphics2D getSyncedAWTGraphics() {
+        if (graphics2D == null) {
+            graphics2D = bufferedImage.createGraphics();
+            graphics2D.setColor(Color.BLACK);
+            graphics2D.setFont(Font.getDefaultFont().getAWTFont());
+            awtColor = 0;
+            awtFont = Font.getDefaultFont();
+            awtTranslateX = 0;
+            awtTranslateY = 0;
+            awtClipValid = false;
+        }
+
+        if (awtColor != color) {
+            graphics2D.setColor(new Color(color));
+            awtColor = color;
+        }
+        if (awtFont != font) {
+            graphics2D.setFont(font.getAWTFont());
+            awtFont = font;
+        }
+        if (awtTranslateX != translateX || awtTranslateY != translateY) {
+            graphics2D.translate(translateX - awtTranslateX, translateY - awtTranslateY);
+            awtTranslateX = translateX;
+            awtTranslateY = translateY;
+        }
+        if (!awtClipValid) {
+            graphics2D.setClip(clipX1 - translateX, clipY1 - translateY, clipX2 - clipX1, clipY2 - clipY1);
+            awtClipValid = true;
+        }
 
-        graphics2D.setFont(Font.getDefaultFont().getAWTFont());
+        return graphics2D;
     }
 
     public void translate(int x, int y) {
-        graphics2D.translate(x, y);
         translateX += x;
         translateY += y;
     }
@@ -44,7 +98,7 @@ public class Graphics {
     }
 
     public int getColor() {
-        return graphics2D.getColor().getRGB();
+        return color;
     }
 
     public int getRedComponent() {
@@ -68,7 +122,7 @@ public class Graphics {
     }
 
     public void setColor(int rgb) {
-        graphics2D.setColor(new Color(rgb));
+        color = rgb & 0xFFFFFF;
     }
 
     public void setGrayScale(int value) {
@@ -76,7 +130,7 @@ public class Graphics {
     }
 
     public Font getFont() {
-        return Font.getDefaultFont();
+        return font;
     }
 
     public void setStrokeStyle(int style) {
@@ -88,44 +142,76 @@ public class Graphics {
     }
 
     public void setFont(Font font) {
+        this.font = font != null ? font : Font.getDefaultFont();
     }
 
     public int getClipX() {
-        return clipRect.x;
+        return clipX1 - translateX;
     }
 
     public int getClipY() {
-        return clipRect.y;
+        return clipY1 - translateY;
     }
 
     public int getClipWidth() {
-        return clipRect.width;
+        return clipX2 - clipX1;
     }
 
     public int getClipHeight() {
-        return clipRect.height;
+        return clipY2 - clipY1;
     }
 
     public void clipRect(int x, int y, int width, int height) {
-        clipRect = clipRect.intersection(new Rectangle(x, y, width, height));
-        graphics2D.setClip(clipRect);
+        setDeviceClip(
+                Math.max(clipX1, x + translateX),
+                Math.max(clipY1, y + translateY),
+                Math.min(clipX2, x + translateX + width),
+                Math.min(clipY2, y + translateY + height)
+        );
     }
 
     public void setClip(int x, int y, int width, int height) {
-        clipRect = new Rectangle(x, y, width, height);
-        graphics2D.setClip(clipRect);
+        setDeviceClip(
+                Math.max(0, x + translateX),
+                Math.max(0, y + translateY),
+                Math.min(bufferedImage.getWidth(), x + translateX + width),
+                Math.min(bufferedImage.getHeight(), y + translateY + height)
+        );
+    }
+
+    private void setDeviceClip(int x1, int y1, int x2, int y2) {
+        clipX1 = x1;
+        clipY1 = y1;
+        clipX2 = Math.max(x1, x2);
+        clipY2 = Math.max(y1, y2);
+        awtClipValid = false;
     }
 
     public void drawLine(int x1, int y1, int x2, int y2) {
-        graphics2D.drawLine(x1, y1, x2, y2);
+        if (rasterizer != null) {
+            rasterizer.drawLine(x1 + translateX, y1 + translateY, x2 + translateX, y2 + translateY,
+                    0xFF000000 | color, clipX1, clipY1, clipX2, clipY2);
+        } else {
+            getSyncedAWTGraphics().drawLine(x1, y1, x2, y2);
+        }
     }
 
     public void fillRect(int x, int y, int width, int height) {
-        graphics2D.fillRect(x, y, width, height);
+        if (rasterizer != null) {
+            rasterizer.fillRect(x + translateX, y + translateY, width, height,
+                    0xFF000000 | color, clipX1, clipY1, clipX2, clipY2);
+        } else {
+            getSyncedAWTGraphics().fillRect(x, y, width, height);
+        }
     }
 
     public void drawRect(int x, int y, int width, int height) {
-        graphics2D.drawRect(x, y, width, height);
+        if (rasterizer != null) {
+            rasterizer.drawRect(x + translateX, y + translateY, width, height,
+                    0xFF000000 | color, clipX1, clipY1, clipX2, clipY2);
+        } else {
+            getSyncedAWTGraphics().drawRect(x, y, width, height);
+        }
     }
 
     public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
@@ -137,69 +223,167 @@ public class Graphics {
     }
 
     public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
-        graphics2D.fillArc(x, y, width, height, startAngle, arcAngle);
+        // partial arcs are rare enough to leave them to Java2D
+        if (rasterizer != null && Math.abs(arcAngle) >= 360) {
+            rasterizer.fillEllipse(x + translateX, y + translateY, width, height,
+                    0xFF000000 | color, clipX1, clipY1, clipX2, clipY2);
+        } else {
+            getSyncedAWTGraphics().fillArc(x, y, width, height, startAngle, arcAngle);
+        }
     }
 
     public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
-        graphics2D.drawArc(x, y, width, height, startAngle, arcAngle);
+        if (rasterizer != null && Math.abs(arcAngle) >= 360) {
+            rasterizer.drawEllipse(x + translateX, y + translateY, width, height,
+                    0xFF000000 | color, clipX1, clipY1, clipX2, clipY2);
+        } else {
+            getSyncedAWTGraphics().drawArc(x, y, width, height, startAngle, arcAngle);
+        }
     }
 
     public void drawString(String str, int x, int y, int anchor) {
-        drawSubstring(str, 0, str.length(), x, y, anchor);
+        drawText(str, 0, str.length(), x, y, anchor);
     }
 
     public void drawSubstring(String str, int offset, int len, int x, int y, int anchor) {
-        drawChars(str.toCharArray(), offset, len, x, y, anchor);
+        drawText(str, offset, len, x, y, anchor);
     }
 
     public void drawChar(char character, int x, int y, int anchor) {
-        throw new FeatureNotImplementedError("Graphics::drawChar");
+        drawText(String.valueOf(character), 0, 1, x, y, anchor);
     }
 
     public void drawChars(char[] data, int offset, int length, int x, int y, int anchor) {
-        FontMetrics fontMetrics = graphics2D.getFontMetrics();
-        int width = fontMetrics.charsWidth(data, offset, length);
+        drawText(CharBuffer.wrap(data), offset, length, x, y, anchor);
+    }
+
+    private void drawText(CharSequence text, int offset, int length, int x, int y, int anchor) {
+        Font font = this.font;
+
+        int width = 0;
+        if ((anchor & (HCENTER | RIGHT)) != 0 || font.isUnderlined()) {
+            width = font.charsWidth(text, offset, length);
+        }
+
         if ((anchor & HCENTER) == HCENTER) {
             x -= width / 2;
         } else if ((anchor & RIGHT) == RIGHT) {
             x -= width;
         }
         if ((anchor & TOP) == TOP) {
-            y += fontMetrics.getAscent();
+            y += font.getBaselinePosition();
         } else if ((anchor & BOTTOM) == BOTTOM) {
-            y -= fontMetrics.getDescent();
+            y -= font.getDescent();
+        }
+
+        if (font.isUnderlined()) {
+            fillRect(x, y + 1, width, 1);
+        }
+
+        if (rasterizer == null) {
+            getSyncedAWTGraphics().drawString(text.subSequence(offset, offset + length).toString(), x, y);
+            return;
+        }
+
+        int penX = x + translateX;
+        int baseline = y + translateY;
+        int argb = 0xFF000000 | color;
+        GlyphAtlas atlas = font.getGlyphAtlas();
+
+        // single characters are drawn from the atlas just as quickly
+        BoundedLruCache<TextMask.Key, TextMask> textCache =
+                length > 1 && AppInstance.appInstance != null ? AppInstance.appInstance.getTextCache() : null;
+        if (textCache != null && textCache.getBudget() > 0) {
+            TextMask.Key key = new TextMask.Key(atlas, text, offset, length);
+            TextMask textMask = textCache.get(key);
+            if (textMask == null) {
+                textMask = TextMask.render(atlas, text, offset, length);
+                textCache.put(key.copy(), textMask);
+            }
+            if (textMask.width > 0) {
+                rasterizer.drawMask(textMask.mask, textMask.width, textMask.height,
+                        penX + textMask.originX, baseline + textMask.originY, argb,
+                        clipX1, clipY1, clipX2, clipY2);
+            }
+            return;
+        }
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            GlyphAtlas.Glyph glyph = atlas.getGlyph(text.charAt(i));
+            if (glyph.width > 0) {
+                rasterizer.drawMask(glyph.mask, glyph.width, glyph.height,
+                        penX + glyph.originX, baseline + glyph.originY, argb,
+                        clipX1, clipY1, clipX2, clipY2);
+            }
+            penX += glyph.advance;
         }
-        graphics2D.drawChars(data, offset, length, x, y);
     }
 
     public void drawImage(Image img, int x, int y, int anchor) {
-        BufferedImage bimg = Image.getBufferedImage(img);
+        drawRegion(img, 0, 0, img.getWidth(), img.getHeight(), 0, x, y, anchor);
+    }
+
+    public void drawRegion(Image src, int xSrc, int ySrc, int width, int height, int transform,
+                           int xDest, int yDest, int anchor) {
+        if (xSrc < 0 || ySrc < 0 || width < 0 || height < 0
+                || xSrc + width > src.getWidth() || ySrc + height > src.getHeight()) {
+            throw new IllegalArgumentException("Graphics::drawRegion() - region out of bounds");
+        }
+        if (width == 0 || height == 0) return;
+
+        if (transform != SpriteTransforms.TRANS_NONE) {
+            src = Image.createImage(src, xSrc, ySrc, width, height, transform);
+            xSrc = 0;
+            ySrc = 0;
+            width = src.getWidth();
+            height = src.getHeight();
+        }
 
         if ((anchor & HCENTER) == HCENTER) {
-            x -= bimg.getWidth() / 2;
+            xDest -= width / 2;
         } else if ((anchor & RIGHT) == RIGHT) {
-            x -= bimg.getWidth();
+            xDest -= width;
         }
 
         if ((anchor & VCENTER) == VCENTER) {
-            y -= bimg.getHeight() / 2;
+            yDest -= height / 2;
         } else if ((anchor & BOTTOM) == BOTTOM) {
-            y -= bimg.getHeight();
+            yDest -= height;
         }
 
-        graphics2D.drawImage(bimg, x, y, null);
+        SoftRasterizer source = src.getRasterizer();
+        if (rasterizer != null && rasterizer.isOpaque() && source != null) {
+            rasterizer.drawImage(source, xSrc, ySrc, width, height, xDest + translateX, yDest + translateY,
+                    clipX1, clipY1, clipX2, clipY2);
+        } else {
+            getSyncedAWTGraphics().drawImage(Image.getBufferedImage(src),
+                    xDest, yDest, xDest + width, yDest + height,
+                    xSrc, ySrc, xSrc + width, ySrc + height,
+                    null);
+        }
     }
 
+    /**
+     * The returned context reflects the current color, clip and translation,
+     * but changes made to it directly aren't tracked.
+     */
     public static Graphics2D getAWTGraphics(Graphics g) {
-        return g.graphics2D;
+        return g.getSyncedAWTGraphics();
     }
 
     public static BufferedImage getImage(Graphics g) {
         return g.bufferedImage;
     }
 
-    // XCE API
+    /**
+     * Restores the state of a freshly created context, so that the same instance can be reused for each paint.
+     * Also part of the XCE API.
+     */
     public void reset() {
-        System.err.println("Graphics::reset() not impl");
+        translateX = 0;
+        translateY = 0;
+        color = 0;
+        font = Font.getDefaultFont();
+        setDeviceClip(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight());
     }
 }
@@ -1,6 +1,12 @@
 package javax.microedition.lcdui;
 
 import net.sktemu.ams.AmsResourceManager;
+import net.sktemu.ams.AppInstance;
+import net.sktemu.ui.raster.PixelFormats;
+import net.sktemu.ui.raster.SoftRasterizer;
+import net.sktemu.ui.raster.SpriteTransforms;
+import net.sktemu.utils.BoundedLruCache;
+import net.sktemu.utils.HashUtils;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -9,14 +15,19 @@ import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 
 public class Image {
     private final BufferedImage image;
     private boolean mutable;
 
+    // null if the image isn't in a format the rasterizer can draw from
+    private final SoftRasterizer rasterizer;
+
     private Image(boolean mutable, BufferedImage bufferedImage) {
         this.image = bufferedImage;
         this.mutable = mutable;
+        this.rasterizer = PixelFormats.isNormalized(bufferedImage) ? SoftRasterizer.forImage(bufferedImage) : null;
     }
 
     public static Image createImage(int width, int height) {
@@ -24,28 +35,34 @@ public class Image {
     }
 
     public static Image createImage(Image source) {
-        return new Image(false, copyImage(source.image));
+        if (!source.mutable) {
+            return source;
+        }
+        return new Image(false, PixelFormats.normalize(copyImage(source.image)));
     }
 
     public static Image createImage(Image image, int x, int y, int width, int height, int transform) {
-        if (transform != 0) {
-            throw new UnsupportedOperationException();
+        if (width <= 0 || height <= 0 || x < 0 || y < 0
+                || x + width > image.getWidth() || y + height > image.getHeight()) {
+            throw new IllegalArgumentException("Image::createImage() - region out of bounds");
         }
-        Image result = createImage(width, height);
-        java.awt.Graphics2D g = result.image.createGraphics();
-        g.drawImage(
-                image.image,
-                0, 0,
-                width, height,
-                x, y,
-                x + width, x + height,
-                null
-        );
-        result.mutable = false;
-        return image;
+
+        // the contents of mutable images may still change, so their regions can't be cached
+        BufferedImage result = image.mutable
+                ? SpriteTransforms.transform(image.image, x, y, width, height, transform)
+                : SpriteTransforms.transformImmutable(image.image, x, y, width, height, transform);
+        return new Image(false, result);
     }
 
     public static Image createImage(String name) throws IOException {
+        BoundedLruCache<String, BufferedImage> imageCache = AppInstance.appInstance.getImageCache();
+        String cacheKey = "res:" + (name.startsWith("/") ? name.substring(1) : name);
+
+        BufferedImage cachedImage = imageCache.get(cacheKey);
+        if (cachedImage != null) {
+            return new Image(false, cachedImage);
+        }
+
         try {
             try (InputStream stream = AmsResourceManager.getResourceAsStream(Image.class, name)) {
                 if (stream == null) {
@@ -57,7 +74,9 @@ public class Image {
                     System.err.println("ImageIO.read returned null on " + name);
                     return null;
                 }
+                image = PixelFormats.normalize(image);
 
+                imageCache.put(cacheKey, image);
                 return new Image(false, image);
             }
         } catch (Exception e) {
@@ -67,6 +86,20 @@ public class Image {
     }
 
     public static Image createImage(byte[] imageData, int imageOffset, int imageLength) {
+        BoundedLruCache<String, BufferedImage> imageCache = AppInstance.appInstance.getImageCache();
+        String cacheKey = null;
+
+        if (imageCache.getBudget() > 0) {
+            MessageDigest digest = HashUtils.newSha256();
+            digest.update(imageData, imageOffset, imageLength);
+            cacheKey = "sha256:" + HashUtils.toHex(digest.digest());
+
+            BufferedImage cachedImage = imageCache.get(cacheKey);
+            if (cachedImage != null) {
+                return new Image(false, cachedImage);
+            }
+        }
+
         ByteArrayInputStream bais = new ByteArrayInputStream(imageData, imageOffset, imageLength);
         BufferedImage image = null;
         try {
@@ -75,7 +108,11 @@ public class Image {
                 System.err.println("ImageIO.read returned null on byte array");
                 return null;
             }
+            image = PixelFormats.normalize(image);
 
+            if (cacheKey != null) {
+                imageCache.put(cacheKey, image);
+            }
             return new Image(false, image);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -108,6 +145,10 @@ public class Image {
         return mutable;
     }
 
+    SoftRasterizer getRasterizer() {
+        return rasterizer;
+    }
+
     public static BufferedImage getBufferedImage(Image image) {
         return image.image;
     }
@@ -2,10 +2,11 @@ package net.sktemu;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.converters.FileConverter;
 import net.sktemu.ams.*;
 import net.sktemu.launcher.LauncherStartup;
-import net.sktemu.ui.EmuUIFrame;
+import net.sktemu.ui.HeadlessPresentationTarget;
 
 import javax.swing.*;
 import java.io.File;
@@ -15,6 +16,9 @@ public class AppStartup implements Runnable {
     @Parameter(names = {"--appdir", "-a"}, converter = FileConverter.class)
     private File appDir;
 
+    @Parameter(names = {"--headless"}, description = "Run the app without a window, requires --appdir")
+    private boolean headless;
+
     public static void main(String... args) {
         AppStartup startup = new AppStartup();
         JCommander.newBuilder()
@@ -22,12 +26,22 @@ public class AppStartup implements Runnable {
                 .build()
                 .parse(args);
 
+        if (startup.headless) {
+            // before anything touches AWT, so that no display is needed
+            System.setProperty("java.awt.headless", "true");
+        }
+
         startup.run();
     }
 
     @Override
     public void run() {
-        if (appDir == null) {
+        if (headless) {
+            if (appDir == null) {
+                throw new ParameterException("--headless requires --appdir");
+            }
+            headlessRun();
+        } else if (appDir == null) {
             LauncherStartup launcherStartup = new LauncherStartup();
             launcherStartup.run();
         } else {
@@ -35,14 +49,30 @@ public class AppStartup implements Runnable {
         }
     }
 
+    private AppModel createAppModel() throws AmsException, IOException {
+        AppModelFactory factory = AppModelFactoryManager.detectFactory(appDir);
+        if (factory == null) {
+            throw new AmsException("unsupported app type");
+        }
+        return factory.createAppModel(appDir);
+    }
+
     private void swingRun() {
         try {
-            AppModelFactory factory = AppModelFactoryManager.detectFactory(appDir);
-            if (factory == null) {
-                throw new AmsException("unsupported app type");
-            }
-            AppModel appModel = factory.createAppModel(appDir);
-            AppInstance.launchApp(appModel);
+            AppInstance.launchApp(createAppModel());
+        } catch (AmsException | IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void headlessRun() {
+        try {
+            AppModel appModel = createAppModel();
+            HeadlessPresentationTarget target = new HeadlessPresentationTarget(
+                    appModel.getDeviceProfile().getScreenWidth(),
+                    appModel.getDeviceProfile().getScreenHeight()
+            );
+            AppInstance.launchAppHeadless(appModel, target);
         } catch (AmsException | IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,116 @@
+package net.sktemu.ams;
+
+import net.sktemu.ams.transform.AmsTransformPipeline;
+
+import java.io.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class AmsBytecodeCache implements Closeable {
+    private static final int MAGIC = 0x534B4243; // SKBC
+
+    private final File file;
+    private final ConcurrentHashMap<String, byte[]> entries = new ConcurrentHashMap<>();
+    private DataOutputStream output;
+
+    public AmsBytecodeCache(File file, String key) throws IOException {
+        this.file = file;
+
+        long validLength = load(key);
+
+        if (validLength == 0) {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            output.writeInt(MAGIC);
+            output.writeUTF(key);
+            output.flush();
+        } else {
+            // drop whatever was left of an entry that didn't get written completely
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
+    }
+
+    private long load(String key) throws IOException {
+        if (!file.isFile()) {
+            return 0;
+        }
+
+        try (FileInputStream fis = new FileInputStream(file);
+             DataInputStream dis = new DataInputStream(new BufferedInputStream(fis))) {
+            if (dis.readInt() != MAGIC || !key.equals(dis.readUTF())) {
+                return 0;
+            }
+
+            long fileLength = file.length();
+            long validLength = 4 + 2 + modifiedUtf8Length(key);
+            while (true) {
+                String name;
+                byte[] data;
+                try {
+                    name = dis.readUTF();
+                    int length = dis.readInt();
+
+                    // a corrupt length would make us allocate garbage, stop at the last good entry instead
+                    long remaining = fileLength - (validLength + 2 + modifiedUtf8Length(name) + 4);
+                    if (length < 0 || length > remaining) {
+                        break;
+                    }
+
+                    data = new byte[length];
+                    dis.readFully(data);
+                } catch (EOFException | UTFDataFormatException e) {
+                    break;
+                }
+                entries.put(name, data);
+                validLength += 2 + modifiedUtf8Length(name) + 4 + data.length;
+            }
+
+            return validLength;
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    public byte[] get(String className) {
+        return entries.get(className);
+    }
+
+    public synchronized void put(String className, byte[] data) throws IOException {
+        if (entries.putIfAbsent(className, data) != null || output == null) {
+            return;
+        }
+
+        output.writeUTF(className);
+        output.writeInt(data.length);
+        output.write(data);
+        output.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+    }
+
+    public static String computeKey(String jarHash, AmsTransformPipeline pipeline) {
+        return jarHash + ";" + pipeline.getFingerprint();
+    }
+
+    private static int modifiedUtf8Length(String str) {
+        int length = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
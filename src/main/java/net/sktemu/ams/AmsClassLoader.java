@@ -1,59 +1,363 @@
 package net.sktemu.ams;
 
+import net.sktemu.ams.transform.AmsClassHierarchy;
+import net.sktemu.ams.transform.AmsTransformPipeline;
+import net.sktemu.utils.BoundedLruCache;
+import net.sktemu.utils.HashUtils;
+
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 import java.io.*;
-import java.util.HashMap;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
-public class AmsClassLoader extends ClassLoader implements Closeable {
+public class AmsClassLoader extends ClassLoader implements AmsClassHierarchy, Closeable {
+    static {
+        // guest worker threads (music loaders, network threads) load classes concurrently
+        registerAsParallelCapable();
+    }
+
     private final JarFile jarFile;
+    private final AmsJarImage jarImage;
+    private final AmsTransformPipeline transformPipeline;
+    private final AmsBytecodeCache bytecodeCache;
+    private final AmsResourceAccessLog resourceAccessLog;
 
-    private final HashMap<String, Class<?>> classCache = new HashMap<>();
+    private final ConcurrentHashMap<String, Class<?>> classCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, byte[]> pretransformedClasses = new ConcurrentHashMap<>();
+    private final BoundedLruCache<String, byte[]> resourceCache;
     private final AppModel appModel;
 
+    // keyed by internal name, covers guest classes and the emulator classes they reference
+    private final ConcurrentHashMap<String, ClassInfo> classInfos = new ConcurrentHashMap<>();
+
+    private static class ClassInfo {
+        private static final ClassInfo UNKNOWN = new ClassInfo(null, Collections.emptySet());
+
+        private final String superName;
+        // name followed by descriptor
+        private final Set<String> methods;
+
+        private ClassInfo(String superName, Set<String> methods) {
+            this.superName = superName;
+            this.methods = methods;
+        }
+    }
+
     public AmsClassLoader(AppModel appModel) throws IOException, AmsException {
         super(AmsClassLoader.class.getClassLoader());
 
         this.appModel = appModel;
-        this.jarFile = new JarFile(appModel.doCacheJar());
+        this.resourceCache = new BoundedLruCache<>(
+                appModel.getDeviceProfile().getResourceCacheSize() * 1024L,
+                data -> data.length
+        );
+
+        this.transformPipeline = new AmsTransformPipeline(appModel.getDeviceProfile(), this);
+
+        AmsJarLocation jarLocation = appModel.doCacheJar();
+        if (appModel.getDeviceProfile().getJarImage() || jarLocation.getOffset() != 0) {
+            this.jarFile = null;
+            this.jarImage = new AmsJarImage(jarLocation.getFile(), jarLocation.getOffset(), resourceCache);
+        } else {
+            this.jarFile = new JarFile(jarLocation.getFile());
+            this.jarImage = null;
+        }
+
+        AmsBytecodeCache bytecodeCache = null;
+        try {
+            bytecodeCache = new AmsBytecodeCache(
+                    new File(appModel.getCacheDir(), "classes.bin"),
+                    AmsBytecodeCache.computeKey(
+                            jarLocation.getContentHash() != null
+                                    ? jarLocation.getContentHash()
+                                    : HashUtils.sha256(jarLocation.getFile()),
+                            transformPipeline
+                    )
+            );
+        } catch (IOException e) {
+            System.err.println("failed to open bytecode cache, classes will not be cached");
+            e.printStackTrace();
+        }
+        this.bytecodeCache = bytecodeCache;
+
+        AmsResourceAccessLog resourceAccessLog = null;
+        try {
+            resourceAccessLog = new AmsResourceAccessLog(new File(appModel.getCacheDir(), "resources.log"));
+        } catch (IOException e) {
+            System.err.println("failed to open resource access log");
+            e.printStackTrace();
+        }
+        this.resourceAccessLog = resourceAccessLog;
     }
 
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
-        if (classCache.containsKey(name)) {
-            return classCache.get(name);
+        Class<?> cachedClass = classCache.get(name);
+        if (cachedClass != null) {
+            return cachedClass;
         }
 
-        String path = name.replace('.', '/').concat(".class");
-        JarEntry entry = jarFile.getJarEntry(path);
-        if (entry == null) {
-            throw new ClassNotFoundException(name);
+        synchronized (getClassLoadingLock(name)) {
+            cachedClass = classCache.get(name);
+            if (cachedClass != null) {
+                return cachedClass;
+            }
+
+            return defineTransformedClass(name);
         }
+    }
+
+    private Class<?> defineTransformedClass(String name) throws ClassNotFoundException {
+        byte[] data = pretransformedClasses.remove(name);
+        if (data == null && bytecodeCache != null) {
+            data = bytecodeCache.get(name);
+        }
+        if (data == null) {
+            data = transformClass(name);
+
+            if (bytecodeCache != null) {
+                try {
+                    bytecodeCache.put(name, data);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        Class<?> clazz = defineClass(name, data, 0, data.length);
+
+        classCache.put(name, clazz);
+        return clazz;
+    }
+
+    public void pretransformClasses() throws AmsException {
+        long startTime = System.nanoTime();
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (String path : getEntryNames()) {
+            if (!path.endsWith(".class")) continue;
+
+            String name = path.substring(0, path.length() - 6).replace('/', '.');
+            if (bytecodeCache != null && bytecodeCache.get(name) != null) continue;
+
+            tasks.add(() -> {
+                byte[] data = transformClass(name);
+                pretransformedClasses.put(name, data);
+                if (bytecodeCache != null) {
+                    bytecodeCache.put(name, data);
+                }
+                return null;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
         try {
-            InputStream stream = jarFile.getInputStream(entry);
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // the class will be retried lazily when it's actually loaded
+                    e.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmsException("class pretransformation interrupted", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.printf("pretransformed %d classes in %d ms using %d threads%n",
+                tasks.size(), (System.nanoTime() - startTime) / 1_000_000L, pool.getParallelism());
+        System.out.println("transform pipeline: " + transformPipeline.getStatsString());
+    }
+
+    public void startResourcePrefetch() {
+        if (resourceAccessLog == null || resourceAccessLog.getPreviousEntries().isEmpty()) {
+            return;
+        }
+
+        List<String> paths = resourceAccessLog.getPreviousEntries();
+
+        Thread thread = new Thread(() -> {
+            long startTime = System.nanoTime();
+            long prefetchedBytes = 0;
+            int numPrefetched = 0;
 
-            ClassReader classReader = new ClassReader(stream);
+            for (String path : paths) {
+                try {
+                    if (jarImage != null) {
+                        jarImage.prefetch(path);
+                    } else if (!resourceCache.containsKey(path)) {
+                        byte[] data = readEntry(path);
+                        if (data == null) continue;
 
-            ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-            AmsClassProcessor classProcessor = new AmsClassProcessor(classWriter, appModel.getDeviceProfile().getSecureUtilWorkaround());
+                        // anything past the budget would only evict what we have just prefetched
+                        prefetchedBytes += data.length;
+                        if (prefetchedBytes > resourceCache.getBudget()) break;
 
-            classReader.accept(classProcessor, 0);
+                        resourceCache.put(path, data);
+                    }
+                    numPrefetched++;
+                } catch (IOException e) {
+                    // the guest will get the error itself if it asks for the resource
+                    break;
+                }
+            }
 
-            byte[] data = classWriter.toByteArray();
+            System.out.printf("prefetched %d resources in %d ms%n",
+                    numPrefetched, (System.nanoTime() - startTime) / 1_000_000L);
+        }, "SKTemu resource prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
 
-            Class<?> clazz = defineClass(name, data, 0, data.length);
+    private List<String> getEntryNames() {
+        if (jarImage != null) {
+            return jarImage.getEntryNames();
+        }
 
-            classCache.put(name, clazz);
-            return clazz;
+        List<String> names = new ArrayList<>();
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.isDirectory()) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
+    private byte[] readEntry(String path) throws IOException {
+        if (jarImage != null) {
+            return jarImage.getEntryBytes(path);
+        }
+
+        JarEntry entry = jarFile.getJarEntry(path);
+        if (entry == null) {
+            return null;
+        }
+        try (InputStream stream = jarFile.getInputStream(entry)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max((int) entry.getSize(), 0));
+            byte[] buf = new byte[4096];
+            int numRead;
+            while ((numRead = stream.read(buf)) >= 0) {
+                baos.write(buf, 0, numRead);
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    private byte[] transformClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/').concat(".class");
+        try {
+            byte[] classFile = readEntry(path);
+            if (classFile == null) {
+                throw new ClassNotFoundException(name);
+            }
+
+            return transformPipeline.transform(classFile);
         } catch (IOException e) {
             throw new ClassNotFoundException(name, e);
         }
     }
 
+    @Override
+    public String getSuperName(String className) {
+        return getClassInfo(className).superName;
+    }
+
+    @Override
+    public boolean declaresMethod(String className, String name, String descriptor) {
+        return getClassInfo(className).methods.contains(name + descriptor);
+    }
+
+    private ClassInfo getClassInfo(String className) {
+        ClassInfo info = classInfos.get(className);
+        if (info == null) {
+            // not computeIfAbsent, reading the class may ask for others while transforming in parallel
+            info = readClassInfo(className);
+            ClassInfo existing = classInfos.putIfAbsent(className, info);
+            if (existing != null) {
+                info = existing;
+            }
+        }
+        return info;
+    }
+
+    private ClassInfo readClassInfo(String className) {
+        byte[] classFile;
+        try {
+            classFile = readEntry(className.concat(".class"));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ClassInfo.UNKNOWN;
+        }
+
+        Set<String> methods = new HashSet<>();
+        if (classFile != null) {
+            ClassReader reader = new ClassReader(classFile);
+            reader.accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    methods.add(name + descriptor);
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return new ClassInfo(reader.getSuperName(), methods);
+        }
+
+        // not a guest class, so it comes from the emulator or the JDK, ask without initializing it
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(className.replace('/', '.'), false, getParent());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return ClassInfo.UNKNOWN;
+        }
+        for (Method method : clazz.getDeclaredMethods()) {
+            methods.add(method.getName() + Type.getMethodDescriptor(method));
+        }
+        Class<?> superclass = clazz.getSuperclass();
+        return new ClassInfo(superclass != null ? Type.getInternalName(superclass) : null, methods);
+    }
+
     public InputStream getAmsResourceAsStream(String path) throws IOException {
+        if (resourceAccessLog != null) {
+            resourceAccessLog.record(path);
+        }
+
+        if (jarImage != null) {
+            // stored entries are zero-copy slices, deflated ones go through resourceCache
+            ByteBuffer buffer = jarImage.getEntryBuffer(path);
+            return buffer != null ? new ByteBufferInputStream(buffer) : null;
+        }
+
+        if (resourceCache.getBudget() > 0) {
+            byte[] data = resourceCache.get(path);
+            if (data == null) {
+                data = readEntry(path);
+                if (data == null) {
+                    return null;
+                }
+                resourceCache.put(path, data);
+            }
+            return new ByteBufferInputStream(ByteBuffer.wrap(data).asReadOnlyBuffer());
+        }
+
         JarEntry entry = jarFile.getJarEntry(path);
         if (entry == null) {
             return null;
@@ -61,8 +365,32 @@ public class AmsClassLoader extends ClassLoader implements Closeable {
         return new FullyInputStream(jarFile.getInputStream(entry));
     }
 
+    public AmsTransformPipeline getTransformPipeline() {
+        return transformPipeline;
+    }
+
+    public BoundedLruCache<String, byte[]> getResourceCache() {
+        return resourceCache;
+    }
+
     @Override
     public void close() throws IOException {
-        jarFile.close();
+        System.out.println("transform pipeline: " + transformPipeline.getStatsString());
+        System.out.println("resource cache: " + resourceCache.getStatsString());
+
+        try {
+            if (bytecodeCache != null) {
+                bytecodeCache.close();
+            }
+            if (resourceAccessLog != null) {
+                resourceAccessLog.close();
+            }
+        } finally {
+            if (jarImage != null) {
+                jarImage.close();
+            } else {
+                jarFile.close();
+            }
+        }
     }
 }
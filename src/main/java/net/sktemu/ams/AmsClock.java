@@ -0,0 +1,305 @@
+package net.sktemu.ams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Guest-visible time source. Guest calls to System.currentTimeMillis, Thread.sleep, Object.wait(long)
+ * and Object.notify/notifyAll are redirected here by the time transform pass.
+ */
+public class AmsClock {
+    public enum Mode {
+        REALTIME,
+        SCALED,
+        /**
+         * A stepped clock: sleepers and timed waiters block until guest time reaches their deadline,
+         * and guest time jumps to the earliest deadline as soon as every guest thread is blocked.
+         */
+        UNTHROTTLED
+    }
+
+    // how often blocked threads check whether time can be stepped, in real time
+    private static final long POLL_MILLIS = 1;
+
+    private final Mode mode;
+    private final double scale;
+    private final ThreadGroup guestThreads;
+
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    // UNTHROTTLED state, guarded by this
+    private volatile long steppedMillis = 0;
+    private final List<Deadline> deadlines = new ArrayList<>();
+
+    // threads about to take the clock lock look blocked, but they are about to add or release a deadline
+    private final AtomicInteger entering = new AtomicInteger();
+
+    private static final class Deadline {
+        private final Thread thread;
+        private final long millis;
+        // the monitor of a timed wait, null for a sleep
+        private final Object monitor;
+
+        private boolean due = false;
+        private boolean notified = false;
+
+        private Deadline(Thread thread, long millis, Object monitor) {
+            this.thread = thread;
+            this.millis = millis;
+            this.monitor = monitor;
+        }
+    }
+
+    /**
+     * @param guestThreads the group all guest threads run in, the stepped clock only advances while all of them
+     *                     are blocked; null to only consider the threads sleeping or waiting on the clock
+     */
+    public AmsClock(Mode mode, double scale, ThreadGroup guestThreads) {
+        this.mode = mode;
+        this.scale = mode == Mode.SCALED && scale > 0 ? scale : 1.0;
+        this.guestThreads = guestThreads;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public long currentTimeMillis() {
+        switch (mode) {
+            case SCALED:
+                return startMillis + (long) ((System.nanoTime() - startNanos) * scale / 1_000_000.0);
+            case UNTHROTTLED:
+                return startMillis + steppedMillis;
+            default:
+                return System.currentTimeMillis();
+        }
+    }
+
+    public void sleep(long millis, int nanos) throws InterruptedException {
+        if (millis < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        if (nanos < 0 || nanos > 999999) {
+            throw new IllegalArgumentException("nanosecond timeout value out of range");
+        }
+
+        switch (mode) {
+            case SCALED:
+                long scaledNanos = (long) ((millis * 1_000_000.0 + nanos) / scale);
+                Thread.sleep(scaledNanos / 1_000_000L, (int) (scaledNanos % 1_000_000L));
+                break;
+            case UNTHROTTLED:
+                // the clock has millisecond steps, like Thread.sleep rounds up
+                steppedSleep(nanos > 0 ? millis + 1 : millis);
+                break;
+            default:
+                Thread.sleep(millis, nanos);
+                break;
+        }
+    }
+
+    public void timedWait(Object object, long millis) throws InterruptedException {
+        if (millis <= 0) {
+            // untimed waits (and the IllegalArgumentException for negative timeouts) are left as they are
+            object.wait(millis);
+            return;
+        }
+
+        switch (mode) {
+            case SCALED:
+                object.wait(Math.max(1, Math.round(millis / scale)));
+                break;
+            case UNTHROTTLED:
+                steppedWait(object, millis);
+                break;
+            default:
+                object.wait(millis);
+                break;
+        }
+    }
+
+    public void notifyWaiters(Object object, boolean all) {
+        // throws if the caller doesn't own the monitor, before anything is marked
+        if (all) {
+            object.notifyAll();
+        } else {
+            object.notify();
+        }
+
+        if (mode != Mode.UNTHROTTLED) return;
+
+        entering.incrementAndGet();
+        synchronized (this) {
+            entering.decrementAndGet();
+
+            // the JVM may wake a different waiter, but the marked one leaves on its next check,
+            // the other one just waits again; at worst an untimed waiter also wakes, which is a legal spurious wakeup
+            for (Deadline deadline : deadlines) {
+                if (deadline.monitor == object && !deadline.due && !deadline.notified) {
+                    deadline.notified = true;
+                    if (!all) break;
+                }
+            }
+        }
+    }
+
+    private void steppedSleep(long millis) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (millis == 0) {
+            Thread.yield();
+            return;
+        }
+
+        entering.incrementAndGet();
+        synchronized (this) {
+            entering.decrementAndGet();
+
+            Deadline deadline = new Deadline(Thread.currentThread(), steppedMillis + millis, null);
+            deadlines.add(deadline);
+            try {
+                while (true) {
+                    tryAdvance();
+                    if (deadline.due) break;
+                    wait(POLL_MILLIS);
+                }
+            } finally {
+                deadlines.remove(deadline);
+            }
+        }
+    }
+
+    private void steppedWait(Object object, long millis) throws InterruptedException {
+        if (!Thread.holdsLock(object)) {
+            throw new IllegalMonitorStateException();
+        }
+
+        // lock order is always guest monitor first, then the clock, the clock never waits for a guest monitor
+        Deadline deadline;
+        entering.incrementAndGet();
+        synchronized (this) {
+            entering.decrementAndGet();
+            deadline = new Deadline(Thread.currentThread(), steppedMillis + millis, object);
+            deadlines.add(deadline);
+        }
+
+        try {
+            while (true) {
+                entering.incrementAndGet();
+                synchronized (this) {
+                    entering.decrementAndGet();
+                    if (!deadline.notified) {
+                        tryAdvance();
+                    }
+                    if (deadline.due || deadline.notified) break;
+                }
+                // the monitor has to be released for notifiers to get in, so this can't wait on the clock
+                object.wait(POLL_MILLIS);
+            }
+        } finally {
+            entering.incrementAndGet();
+            synchronized (this) {
+                entering.decrementAndGet();
+                deadlines.remove(deadline);
+            }
+        }
+    }
+
+    /**
+     * Steps guest time to the earliest deadline if nothing else can happen before it. Call with the lock held.
+     */
+    private void tryAdvance() {
+        long earliest = Long.MAX_VALUE;
+        for (Deadline deadline : deadlines) {
+            if (deadline.due || deadline.notified) {
+                // a thread has been released and hasn't got going yet, it may still do things before the next deadline
+                return;
+            }
+            earliest = Math.min(earliest, deadline.millis);
+        }
+        if (earliest == Long.MAX_VALUE || entering.get() > 0 || !allGuestThreadsBlocked()) {
+            return;
+        }
+
+        steppedMillis = Math.max(steppedMillis, earliest);
+        for (Deadline deadline : deadlines) {
+            if (deadline.millis <= steppedMillis) {
+                deadline.due = true;
+            }
+        }
+        notifyAll();
+    }
+
+    private boolean allGuestThreadsBlocked() {
+        if (guestThreads == null) {
+            return true;
+        }
+
+        Thread[] threads = new Thread[guestThreads.activeCount() + 8];
+        int count = guestThreads.enumerate(threads);
+        if (count == threads.length) {
+            // more threads were started meanwhile, one of them is certainly running
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            Thread thread = threads[i];
+            if (isOnClock(thread)) continue;
+
+            switch (thread.getState()) {
+                case BLOCKED:
+                case WAITING:
+                case TIMED_WAITING:
+                case TERMINATED:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isOnClock(Thread thread) {
+        for (Deadline deadline : deadlines) {
+            if (deadline.thread == thread) return true;
+        }
+        return false;
+    }
+
+    // called from guest code, see TimeMethodPass
+    public static long guestCurrentTimeMillis() {
+        return AppInstance.appInstance.getClock().currentTimeMillis();
+    }
+
+    // called from guest code, see TimeMethodPass
+    public static void guestSleep(long millis) throws InterruptedException {
+        AppInstance.appInstance.getClock().sleep(millis, 0);
+    }
+
+    // called from guest code, see TimeMethodPass
+    public static void guestSleep(long millis, int nanos) throws InterruptedException {
+        AppInstance.appInstance.getClock().sleep(millis, nanos);
+    }
+
+    // called from guest code, see TimeMethodPass
+    public static void guestWait(Object object, long millis) throws InterruptedException {
+        AppInstance.appInstance.getClock().timedWait(object, millis);
+    }
+
+    // called from guest code, see TimeMethodPass
+    public static void guestNotify(Object object) {
+        AppInstance.appInstance.getClock().notifyWaiters(object, false);
+    }
+
+    // called from guest code, see TimeMethodPass
+    public static void guestNotifyAll(Object object) {
+        AppInstance.appInstance.getClock().notifyWaiters(object, true);
+    }
+}
@@ -0,0 +1,202 @@
+package net.sktemu.ams;
+
+import java.util.Arrays;
+
+/**
+ * Paces presented frames to the profile frame rate and keeps frame time statistics.
+ * <p>
+ * Waits sleep until shortly before the deadline and spin for the rest, the spin margin follows
+ * how much Thread.sleep actually oversleeps. When the guest keeps missing the deadline, frames are
+ * paced at an integer fraction of the target rate instead, which judders less than missing it at random.
+ */
+public class AmsFramePacer {
+    private static final int HISTORY_SIZE = 240;
+
+    private static final int ADAPT_WINDOW = 60;
+    private static final int MAX_RATE_DIVISOR = 4;
+
+    private static final long MIN_SPIN_MARGIN = 250_000L;
+    private static final long MAX_SPIN_MARGIN = 4_000_000L;
+
+    private final double targetFps;
+    private final AmsClock clock;
+
+    private boolean started = false;
+    private long lastFrameTime;
+    private long nextDeadline;
+
+    private long sleepOvershoot = MIN_SPIN_MARGIN;
+    private long spinMargin = MIN_SPIN_MARGIN * 2;
+
+    private int rateDivisor = 1;
+    private int windowFrames = 0;
+    private int windowOverruns = 0;
+    private int windowFastFrames = 0;
+
+    private volatile long overrunCount = 0;
+
+    // guarded by itself rather than by this, so that the UI never waits for a sleeping pacer
+    private final long[] frameTimes = new long[HISTORY_SIZE];
+    private int frameTimeCount = 0;
+    private int frameTimePos = 0;
+
+    public AmsFramePacer(double targetFps, AmsClock clock) {
+        this.targetFps = targetFps;
+        this.clock = clock;
+    }
+
+    public double getTargetFps() {
+        return targetFps;
+    }
+
+    private boolean isPacing() {
+        return targetFps > 0 && clock.getMode() != AmsClock.Mode.UNTHROTTLED;
+    }
+
+    /**
+     * Blocks until the next frame is due. Call right before presenting a frame.
+     */
+    public synchronized void waitForNextFrame() throws InterruptedException {
+        long now = System.nanoTime();
+
+        if (!started) {
+            started = true;
+            lastFrameTime = now;
+            nextDeadline = now;
+            return;
+        }
+
+        if (isPacing()) {
+            long basePeriod = (long) (1_000_000_000.0 / (targetFps * clock.getScale()));
+            long workTime = now - lastFrameTime;
+
+            if (workTime > basePeriod * MAX_RATE_DIVISOR * 2) {
+                // the guest didn't present anything for a while (static screen, loading), that's not an overrun
+                lastFrameTime = now;
+                nextDeadline = now;
+                return;
+            }
+
+            adaptRate(workTime, basePeriod);
+
+            long period = basePeriod * rateDivisor;
+            nextDeadline += period;
+
+            if (now > nextDeadline) {
+                overrunCount++;
+                if (now - nextDeadline > period) {
+                    // too late to catch up without rushing several frames out, start over from here
+                    nextDeadline = now;
+                }
+            } else {
+                waitUntil(nextDeadline);
+                now = System.nanoTime();
+            }
+        }
+
+        recordFrameTime(now - lastFrameTime);
+        lastFrameTime = now;
+    }
+
+    private void adaptRate(long workTime, long basePeriod) {
+        windowFrames++;
+        if (workTime > basePeriod * rateDivisor) {
+            windowOverruns++;
+        } else if (rateDivisor > 1 && workTime < basePeriod * (rateDivisor - 1) * 9 / 10) {
+            windowFastFrames++;
+        }
+
+        if (windowFrames < ADAPT_WINDOW) return;
+
+        if (windowOverruns * 4 > ADAPT_WINDOW * 3 && rateDivisor < MAX_RATE_DIVISOR) {
+            rateDivisor++;
+            System.out.printf("frame pacer: sustained overruns, pacing at %.2f fps%n", targetFps / rateDivisor);
+        } else if (windowFastFrames * 10 > ADAPT_WINDOW * 9) {
+            rateDivisor--;
+            System.out.printf("frame pacer: recovered, pacing at %.2f fps%n", targetFps / rateDivisor);
+        }
+
+        windowFrames = 0;
+        windowOverruns = 0;
+        windowFastFrames = 0;
+    }
+
+    private void waitUntil(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > spinMargin) {
+            long sleepNanos = remaining - spinMargin;
+            long sleepStart = System.nanoTime();
+            Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+
+            long overshoot = Math.max(0, System.nanoTime() - sleepStart - sleepNanos);
+            sleepOvershoot += (overshoot - sleepOvershoot) / 8;
+            spinMargin = Math.max(MIN_SPIN_MARGIN, Math.min(MAX_SPIN_MARGIN, sleepOvershoot * 2));
+        }
+
+        while (System.nanoTime() < deadline) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.yield();
+        }
+    }
+
+    private void recordFrameTime(long frameTime) {
+        synchronized (frameTimes) {
+            frameTimes[frameTimePos] = frameTime;
+            frameTimePos = (frameTimePos + 1) % HISTORY_SIZE;
+            if (frameTimeCount < HISTORY_SIZE) {
+                frameTimeCount++;
+            }
+        }
+    }
+
+    private long[] getSortedFrameTimes() {
+        long[] sorted;
+        synchronized (frameTimes) {
+            sorted = Arrays.copyOf(frameTimes, frameTimeCount);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the frame time in milliseconds over the recent frames, or 0 if there are none yet
+     */
+    public double getFrameTimePercentile(double percentile) {
+        return percentile(getSortedFrameTimes(), percentile);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0.0;
+
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+    }
+
+    /**
+     * @return the average rate over the recent frames
+     */
+    public double getCurrentFps() {
+        return averageFps(getSortedFrameTimes());
+    }
+
+    private static double averageFps(long[] frameTimes) {
+        long total = 0;
+        for (long frameTime : frameTimes) {
+            total += frameTime;
+        }
+        return total == 0 ? 0.0 : frameTimes.length * 1_000_000_000.0 / total;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public String getStatsString() {
+        long[] sorted = getSortedFrameTimes();
+        return String.format("%.1f fps, frame time p50 %.1f / p95 %.1f / p99 %.1f ms",
+                averageFps(sorted), percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99));
+    }
+}
@@ -0,0 +1,68 @@
+package net.sktemu.ams;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AmsGcPolicy {
+    public enum Mode {
+        PASSTHROUGH,
+        NOOP,
+        RATE_LIMITED
+    }
+
+    private final Mode mode;
+    private final long minIntervalNanos;
+
+    private final AtomicLong lastGcTime;
+    private final AtomicLong performedCount = new AtomicLong();
+    private final AtomicLong suppressedCount = new AtomicLong();
+
+    public AmsGcPolicy(Mode mode, int minIntervalMillis) {
+        this.mode = mode;
+        this.minIntervalNanos = minIntervalMillis * 1_000_000L;
+        // as if the last collection was just long enough ago, so that the first request goes through
+        this.lastGcTime = new AtomicLong(System.nanoTime() - minIntervalNanos);
+    }
+
+    public void requestGc() {
+        switch (mode) {
+            case NOOP:
+                suppressedCount.incrementAndGet();
+                return;
+            case RATE_LIMITED:
+                long now = System.nanoTime();
+                long last = lastGcTime.get();
+                if (now - last < minIntervalNanos || !lastGcTime.compareAndSet(last, now)) {
+                    suppressedCount.incrementAndGet();
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
+        performedCount.incrementAndGet();
+        Runtime.getRuntime().gc();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getPerformedCount() {
+        return performedCount.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.get();
+    }
+
+    // called from guest code, see GcMethodPass
+    public static void systemGc() {
+        AppInstance.appInstance.getGcPolicy().requestGc();
+    }
+
+    // called from guest code, see GcMethodPass
+    public static void runtimeGc(Runtime runtime) {
+        AppInstance.appInstance.getGcPolicy().requestGc();
+    }
+}
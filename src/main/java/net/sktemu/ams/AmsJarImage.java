@@ -0,0 +1,290 @@
+package net.sktemu.ams;
+
+import net.sktemu.utils.BoundedLruCache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Memory-mapped, read-only view of a jar file.
+ * <p>
+ * The central directory is parsed once into an open-addressing index. Stored entries are served
+ * as slices of the mapping, deflated entries are inflated once and kept in a size-bounded cache.
+ */
+public class AmsJarImage implements Closeable {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIZE = 30;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+
+    private final String[] names;
+    private final int[] headerOffsets;
+    private final int[] dataOffsets;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+    private final byte[] methods;
+
+    // entry index + 1, 0 marks an empty slot
+    private final int[] table;
+    private final int tableMask;
+
+    private final BoundedLruCache<String, byte[]> inflatedCache;
+
+    public AmsJarImage(File file, long offset, BoundedLruCache<String, byte[]> inflatedCache) throws IOException {
+        this.inflatedCache = inflatedCache;
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size() - offset;
+            if (size < EOCD_SIZE || size > Integer.MAX_VALUE) {
+                throw new ZipException("Unsupported jar size: " + size);
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+
+            int eocdPos = findEndOfCentralDirectory();
+            int numEntries = mapping.getShort(eocdPos + 10) & 0xFFFF;
+            int cenSize = mapping.getInt(eocdPos + 12);
+            int cenOffset = mapping.getInt(eocdPos + 16);
+
+            // tolerate data prepended to the archive, like ZipFile does
+            int cenPos = eocdPos - cenSize;
+            int delta = cenPos - cenOffset;
+            if (cenPos < 0 || delta < 0) {
+                throw new ZipException("Invalid central directory");
+            }
+
+            names = new String[numEntries];
+            headerOffsets = new int[numEntries];
+            dataOffsets = new int[numEntries];
+            compressedSizes = new int[numEntries];
+            sizes = new int[numEntries];
+            methods = new byte[numEntries];
+
+            int tableSize = Integer.highestOneBit(Math.max(numEntries, 1) * 2 - 1) << 1;
+            table = new int[tableSize];
+            tableMask = tableSize - 1;
+
+            int pos = cenPos;
+            for (int i = 0; i < numEntries; i++) {
+                if (mapping.getInt(pos) != CEN_SIGNATURE) {
+                    throw new ZipException("Invalid central directory header");
+                }
+                int method = mapping.getShort(pos + 10) & 0xFFFF;
+                int nameLength = mapping.getShort(pos + 28) & 0xFFFF;
+                int extraLength = mapping.getShort(pos + 30) & 0xFFFF;
+                int commentLength = mapping.getShort(pos + 32) & 0xFFFF;
+
+                byte[] nameBytes = new byte[nameLength];
+                ByteBuffer nameBuffer = mapping.duplicate();
+                nameBuffer.position(pos + CEN_SIZE);
+                nameBuffer.get(nameBytes);
+
+                names[i] = new String(nameBytes, StandardCharsets.UTF_8);
+                methods[i] = (byte) method;
+                compressedSizes[i] = mapping.getInt(pos + 20);
+                sizes[i] = mapping.getInt(pos + 24);
+                headerOffsets[i] = mapping.getInt(pos + 42) + delta;
+                dataOffsets[i] = -1;
+
+                insert(i);
+
+                pos += CEN_SIZE + nameLength + extraLength + commentLength;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private int findEndOfCentralDirectory() throws ZipException {
+        int minPos = Math.max(0, mapping.capacity() - EOCD_SIZE - 0xFFFF);
+        for (int pos = mapping.capacity() - EOCD_SIZE; pos >= minPos; pos--) {
+            if (mapping.getInt(pos) == EOCD_SIGNATURE) {
+                return pos;
+            }
+        }
+        throw new ZipException("End of central directory not found");
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void insert(int index) {
+        int slot = hash(names[index]) & tableMask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & tableMask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private int lookup(String name) {
+        int slot = hash(name) & tableMask;
+        while (true) {
+            int index = table[slot] - 1;
+            if (index < 0) {
+                return -1;
+            }
+            if (names[index].equals(name)) {
+                return index;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    public boolean contains(String name) {
+        return lookup(name) >= 0;
+    }
+
+    public List<String> getEntryNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * @return a read-only buffer holding the uncompressed entry data, or null if there is no such entry
+     */
+    public ByteBuffer getEntryBuffer(String name) throws IOException {
+        int index = lookup(name);
+        if (index < 0) {
+            return null;
+        }
+
+        if (methods[index] == METHOD_STORED) {
+            return slice(getDataOffset(index), sizes[index]);
+        } else if (methods[index] == METHOD_DEFLATED) {
+            return ByteBuffer.wrap(getInflatedData(index, true)).asReadOnlyBuffer();
+        } else {
+            throw new ZipException("Unsupported compression method " + methods[index] + " for " + name);
+        }
+    }
+
+    /**
+     * Brings the entry data into memory ahead of use: deflated entries are inflated into the cache,
+     * the pages of stored entries are touched.
+     */
+    public void prefetch(String name) throws IOException {
+        int index = lookup(name);
+        if (index < 0) {
+            return;
+        }
+
+        if (methods[index] == METHOD_DEFLATED) {
+            getInflatedData(index, true);
+        } else {
+            int offset = getDataOffset(index);
+            int end = offset + sizes[index];
+            for (int pos = offset; pos < end; pos += 4096) {
+                mapping.get(pos);
+            }
+        }
+    }
+
+    /**
+     * Unlike {@link #getEntryBuffer(String)}, this doesn't keep inflated data in the cache,
+     * which suits entries that are only read once, such as classes.
+     */
+    public byte[] getEntryBytes(String name) throws IOException {
+        int index = lookup(name);
+        if (index < 0) {
+            return null;
+        }
+
+        if (methods[index] == METHOD_DEFLATED) {
+            return getInflatedData(index, false);
+        }
+
+        ByteBuffer buffer = getEntryBuffer(name);
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + length);
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    private int getDataOffset(int index) throws ZipException {
+        int dataOffset = dataOffsets[index];
+        if (dataOffset < 0) {
+            int headerOffset = headerOffsets[index];
+            if (mapping.getInt(headerOffset) != LOC_SIGNATURE) {
+                throw new ZipException("Invalid local file header for " + names[index]);
+            }
+            int nameLength = mapping.getShort(headerOffset + 26) & 0xFFFF;
+            int extraLength = mapping.getShort(headerOffset + 28) & 0xFFFF;
+            dataOffset = headerOffset + LOC_SIZE + nameLength + extraLength;
+            dataOffsets[index] = dataOffset;
+        }
+        return dataOffset;
+    }
+
+    private byte[] getInflatedData(int index, boolean useCache) throws IOException {
+        if (useCache) {
+            byte[] data = inflatedCache.get(names[index]);
+            if (data != null) {
+                return data;
+            }
+        }
+
+        byte[] compressed = new byte[compressedSizes[index]];
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.position(getDataOffset(index));
+        buffer.get(compressed);
+
+        byte[] data = new byte[sizes[index]];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int numInflated = 0;
+            while (numInflated < data.length) {
+                int count = inflater.inflate(data, numInflated, data.length - numInflated);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated deflated data for " + names[index]);
+                }
+                numInflated += count;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflated data for " + names[index] + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+
+        if (useCache) {
+            inflatedCache.put(names[index], data);
+        }
+
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,30 @@
+package net.sktemu.ams;
+
+import java.io.File;
+
+public class AmsJarLocation {
+    private final File file;
+    private final long offset;
+    private final String contentHash;
+
+    public AmsJarLocation(File file, long offset, String contentHash) {
+        this.file = file;
+        this.offset = offset;
+        this.contentHash = contentHash;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the position of the zip data in the file, non-zero for jars read in place with their prefix
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+}
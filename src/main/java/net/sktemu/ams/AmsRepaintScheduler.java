@@ -0,0 +1,91 @@
+package net.sktemu.ams;
+
+import net.sktemu.ui.DamageRegion;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps at most one paint queued on the app thread per target, requests that arrive
+ * while one is queued are merged into it.
+ */
+public class AmsRepaintScheduler {
+    private final AppInstance appInstance;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong paintCount = new AtomicLong();
+
+    public AmsRepaintScheduler(AppInstance appInstance) {
+        this.appInstance = appInstance;
+    }
+
+    /**
+     * @param paintTask runs on the app thread and is expected to call {@link Target#takePending()}
+     */
+    public Target createTarget(Runnable paintTask) {
+        return new Target(paintTask);
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getPaintCount() {
+        return paintCount.get();
+    }
+
+    public class Target {
+        private final Runnable paintTask;
+        private final DamageRegion region;
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        private Target(Runnable paintTask) {
+            this.paintTask = paintTask;
+
+            BufferedImage backbuffer = appInstance.getBackbufferImage();
+            this.region = new DamageRegion(backbuffer.getWidth(), backbuffer.getHeight());
+        }
+
+        public void request(int x, int y, int width, int height) {
+            region.add(x, y, width, height);
+            schedule();
+        }
+
+        public void requestAll() {
+            region.addAll();
+            schedule();
+        }
+
+        private void schedule() {
+            requestCount.incrementAndGet();
+            if (queued.compareAndSet(false, true)) {
+                appInstance.runOnAppThread(paintTask);
+            } else {
+                coalescedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Takes everything requested so far. The queued flag is cleared first, so a request racing with
+         * the paint either makes it into the returned area or queues a paint of its own.
+         *
+         * @return the area to paint, or null if nothing is pending
+         */
+        public Rectangle takePending() {
+            queued.set(false);
+
+            Rectangle bounds = region.takeBounds();
+            if (bounds != null) {
+                paintCount.incrementAndGet();
+            }
+            return bounds;
+        }
+    }
+}
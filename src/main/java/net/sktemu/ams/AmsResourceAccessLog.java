@@ -0,0 +1,107 @@
+package net.sktemu.ams;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records the order in which the guest first requests each resource, so that the next launch can prefetch them.
+ * <p>
+ * The log is only rewritten on close (or at exit), and paths of the previous log that this session never got to
+ * are kept after the new ones, so a short session doesn't lose what longer ones have learned.
+ */
+public class AmsResourceAccessLog implements Closeable {
+    private final File file;
+    private final List<String> previousEntries = new ArrayList<>();
+    private final Set<String> recordedEntries = ConcurrentHashMap.newKeySet();
+    private final Queue<String> recordedOrder = new ConcurrentLinkedQueue<>();
+
+    private final Thread shutdownHook;
+    private boolean closed = false;
+
+    public AmsResourceAccessLog(File file) throws IOException {
+        this.file = file;
+
+        if (file.isFile()) {
+            try (InputStream stream = new FileInputStream(file);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        previousEntries.add(line);
+                    }
+                }
+            }
+        }
+
+        // the emulator may exit without closing us
+        shutdownHook = new Thread(() -> {
+            try {
+                save();
+            } catch (IOException e) {
+                System.err.println("failed to save resource access log: " + e);
+            }
+        }, "SKTemu resource access log");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public List<String> getPreviousEntries() {
+        return Collections.unmodifiableList(previousEntries);
+    }
+
+    public void record(String path) {
+        // on the guest's resource path, so no I/O here
+        if (recordedEntries.add(path)) {
+            recordedOrder.add(path);
+        }
+    }
+
+    private synchronized void save() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        if (recordedOrder.isEmpty()) {
+            // nothing new was learned, the previous log stays as it is
+            return;
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            for (String path : recordedOrder) {
+                writer.write(path);
+                writer.write('\n');
+            }
+            for (String path : previousEntries) {
+                if (recordedEntries.contains(path)) continue;
+                writer.write(path);
+                writer.write('\n');
+            }
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down, the hook saves the log
+            return;
+        }
+        save();
+    }
+}
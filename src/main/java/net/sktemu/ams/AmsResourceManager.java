@@ -4,14 +4,29 @@ import java.io.IOException;
 import java.io.InputStream;
 
 public class AmsResourceManager {
+    private static volatile AmsResourceTraceSink traceSink =
+            "true".equals(System.getProperty("sktemu.resourceTrace"))
+                    ? (path, found) -> System.out.println("AmsResourceManager::getResourceAsStream " + path + (found ? "" : " (not found)"))
+                    : null;
+
+    public static void setTraceSink(AmsResourceTraceSink sink) {
+        traceSink = sink;
+    }
+
     public static InputStream getResourceAsStream(Class<?> clazz, String name) {
         if (name.startsWith("/")) {
             name = name.substring(1);
         }
 
-        System.out.println("AmsResourceManager::getResourceAsStream " + name);
         try {
-            return AppInstance.appInstance.getClassLoader().getAmsResourceAsStream(name);
+            InputStream stream = AppInstance.appInstance.getClassLoader().getAmsResourceAsStream(name);
+
+            AmsResourceTraceSink sink = traceSink;
+            if (sink != null) {
+                sink.resourceRequested(name, stream != null);
+            }
+
+            return stream;
         } catch (IOException e) {
             e.printStackTrace();
             return null;
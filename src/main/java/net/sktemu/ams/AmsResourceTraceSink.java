@@ -0,0 +1,5 @@
+package net.sktemu.ams;
+
+public interface AmsResourceTraceSink {
+    void resourceRequested(String path, boolean found);
+}
@@ -7,8 +7,20 @@ import java.util.Properties;
 public class AppDeviceProfile {
     private int screenWidth = 240;
     private int screenHeight = 320;
-    private int maxFps = 0;
+    private double maxFps = 0;
     private boolean secureUtilWorkaround = false;
+    private boolean eagerClassTransform = false;
+    private boolean jarImage = false;
+    private boolean resourcePrefetch = false;
+    private boolean scale2x = false;
+    private int resourceCacheSize = 8192;
+    private int imageCacheSize = 16384;
+    private int textCacheSize = 512;
+    private AmsGcPolicy.Mode gcPolicy = AmsGcPolicy.Mode.PASSTHROUGH;
+    private int gcMinInterval = 1000;
+    private AmsClock.Mode clockMode = AmsClock.Mode.REALTIME;
+    private double clockScale = 1.0;
+    private String transformPasses = "";
 
     public void loadDeviceProfile(File file) throws IOException {
         Properties propertyTable = new Properties();
@@ -27,11 +39,44 @@ public class AppDeviceProfile {
         } catch (NumberFormatException ignored) {
         }
         try {
-            maxFps = Integer.parseInt(propertyTable.getProperty("maxFps", "0"));
+            maxFps = Double.parseDouble(propertyTable.getProperty("maxFps", "0"));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            resourceCacheSize = Integer.parseInt(propertyTable.getProperty("resourceCacheSize", "8192"));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            imageCacheSize = Integer.parseInt(propertyTable.getProperty("imageCacheSize", "16384"));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            textCacheSize = Integer.parseInt(propertyTable.getProperty("textCacheSize", "512"));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            gcPolicy = AmsGcPolicy.Mode.valueOf(propertyTable.getProperty("gcPolicy", "PASSTHROUGH"));
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            gcMinInterval = Integer.parseInt(propertyTable.getProperty("gcMinInterval", "1000"));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            clockMode = AmsClock.Mode.valueOf(propertyTable.getProperty("clockMode", "REALTIME"));
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            clockScale = Double.parseDouble(propertyTable.getProperty("clockScale", "1.0"));
         } catch (NumberFormatException ignored) {
         }
 
         secureUtilWorkaround = Boolean.parseBoolean(propertyTable.getProperty("secureUtilWorkaround", "false"));
+        transformPasses = propertyTable.getProperty("transformPasses", "");
+        eagerClassTransform = Boolean.parseBoolean(propertyTable.getProperty("eagerClassTransform", "false"));
+        jarImage = Boolean.parseBoolean(propertyTable.getProperty("jarImage", "false"));
+        resourcePrefetch = Boolean.parseBoolean(propertyTable.getProperty("resourcePrefetch", "false"));
+        scale2x = Boolean.parseBoolean(propertyTable.getProperty("scale2x", "false"));
     }
 
     public void saveDeviceProfile(File file) throws IOException {
@@ -39,8 +84,20 @@ public class AppDeviceProfile {
 
         propertyTable.setProperty("screenWidth", Integer.toString(screenWidth));
         propertyTable.setProperty("screenHeight", Integer.toString(screenHeight));
-        propertyTable.setProperty("maxFps", Integer.toString(maxFps));
+        propertyTable.setProperty("maxFps", Double.toString(maxFps));
+        propertyTable.setProperty("resourceCacheSize", Integer.toString(resourceCacheSize));
+        propertyTable.setProperty("imageCacheSize", Integer.toString(imageCacheSize));
+        propertyTable.setProperty("textCacheSize", Integer.toString(textCacheSize));
+        propertyTable.setProperty("gcPolicy", gcPolicy.name());
+        propertyTable.setProperty("gcMinInterval", Integer.toString(gcMinInterval));
+        propertyTable.setProperty("clockMode", clockMode.name());
+        propertyTable.setProperty("clockScale", Double.toString(clockScale));
         propertyTable.setProperty("secureUtilWorkaround", Boolean.toString(secureUtilWorkaround));
+        propertyTable.setProperty("transformPasses", transformPasses);
+        propertyTable.setProperty("eagerClassTransform", Boolean.toString(eagerClassTransform));
+        propertyTable.setProperty("jarImage", Boolean.toString(jarImage));
+        propertyTable.setProperty("resourcePrefetch", Boolean.toString(resourcePrefetch));
+        propertyTable.setProperty("scale2x", Boolean.toString(scale2x));
 
         try (OutputStream stream = new FileOutputStream(file);
              OutputStreamWriter writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
@@ -64,11 +121,11 @@ public class AppDeviceProfile {
         this.screenHeight = screenHeight;
     }
 
-    public int getMaxFps() {
+    public double getMaxFps() {
         return maxFps;
     }
 
-    public void setMaxFps(int maxFps) {
+    public void setMaxFps(double maxFps) {
         this.maxFps = maxFps;
     }
 
@@ -79,4 +136,119 @@ public class AppDeviceProfile {
     public void setSecureUtilWorkaround(boolean secureUtilWorkaround) {
         this.secureUtilWorkaround = secureUtilWorkaround;
     }
+
+    public boolean getEagerClassTransform() {
+        return eagerClassTransform;
+    }
+
+    public void setEagerClassTransform(boolean eagerClassTransform) {
+        this.eagerClassTransform = eagerClassTransform;
+    }
+
+    public boolean getJarImage() {
+        return jarImage;
+    }
+
+    public void setJarImage(boolean jarImage) {
+        this.jarImage = jarImage;
+    }
+
+    public boolean getResourcePrefetch() {
+        return resourcePrefetch;
+    }
+
+    public void setResourcePrefetch(boolean resourcePrefetch) {
+        this.resourcePrefetch = resourcePrefetch;
+    }
+
+    /**
+     * @return whether the screen is upscaled with the Scale2x filter before nearest neighbour scaling
+     */
+    public boolean getScale2x() {
+        return scale2x;
+    }
+
+    public void setScale2x(boolean scale2x) {
+        this.scale2x = scale2x;
+    }
+
+    /**
+     * @return the budget of the decompressed resource cache, in KiB
+     */
+    public int getResourceCacheSize() {
+        return resourceCacheSize;
+    }
+
+    public void setResourceCacheSize(int resourceCacheSize) {
+        this.resourceCacheSize = resourceCacheSize;
+    }
+
+    public int getImageCacheSize() {
+        return imageCacheSize;
+    }
+
+    public void setImageCacheSize(int imageCacheSize) {
+        this.imageCacheSize = imageCacheSize;
+    }
+
+    /**
+     * @return the budget of the rendered text cache, in KiB; masks take one byte per pixel
+     */
+    public int getTextCacheSize() {
+        return textCacheSize;
+    }
+
+    public void setTextCacheSize(int textCacheSize) {
+        this.textCacheSize = textCacheSize;
+    }
+
+    public AmsGcPolicy.Mode getGcPolicy() {
+        return gcPolicy;
+    }
+
+    public void setGcPolicy(AmsGcPolicy.Mode gcPolicy) {
+        this.gcPolicy = gcPolicy;
+    }
+
+    /**
+     * @return the minimum time between guest-requested collections in {@link AmsGcPolicy.Mode#RATE_LIMITED} mode, in ms
+     */
+    public int getGcMinInterval() {
+        return gcMinInterval;
+    }
+
+    public void setGcMinInterval(int gcMinInterval) {
+        this.gcMinInterval = gcMinInterval;
+    }
+
+    public AmsClock.Mode getClockMode() {
+        return clockMode;
+    }
+
+    public void setClockMode(AmsClock.Mode clockMode) {
+        this.clockMode = clockMode;
+    }
+
+    /**
+     * @return how much faster than real time the guest clock runs in {@link AmsClock.Mode#SCALED} mode
+     */
+    public double getClockScale() {
+        return clockScale;
+    }
+
+    public void setClockScale(double clockScale) {
+        this.clockScale = clockScale;
+    }
+
+    /**
+     * @return comma separated bytecode transform pass names, prefixed with '-' to disable a pass
+     * that is enabled by default; passes that aren't listed keep their default
+     */
+    public String getTransformPasses() {
+        return transformPasses;
+    }
+
+    public void setTransformPasses(String transformPasses) {
+        this.transformPasses = transformPasses;
+    }
 }
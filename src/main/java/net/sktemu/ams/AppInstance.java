@@ -1,9 +1,17 @@
 package net.sktemu.ams;
 
-import net.sktemu.ui.EmuCanvas;
+import net.sktemu.ui.DamageRegion;
 import net.sktemu.ui.EmuUIFrame;
-
+import net.sktemu.ui.FrameChain;
+import net.sktemu.ui.HeadlessPresentationTarget;
+import net.sktemu.ui.PresentationTarget;
+import net.sktemu.ui.raster.SpriteTransforms;
+import net.sktemu.ui.raster.TextMask;
+import net.sktemu.utils.BoundedLruCache;
+
+import javax.microedition.lcdui.Graphics;
 import javax.swing.*;
+import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.concurrent.ExecutorService;
@@ -15,31 +23,75 @@ public abstract class AppInstance implements AutoCloseable {
 
     public final AppModel appModel;
     private BufferedImage backbufferImage;
-    private final EmuCanvas emuCanvas;
+    private Graphics backbufferGraphics;
+    private DamageRegion damageRegion;
+    private final PresentationTarget presentationTarget;
 
+    // guest threads inherit the group of the thread that starts them, so this ends up holding all of them
+    private final ThreadGroup guestThreadGroup = new ThreadGroup("SKTemu guest");
     private ExecutorService appThreadExecutor;
+    private AmsGcPolicy gcPolicy;
+    private AmsClock clock;
+    private AmsRepaintScheduler repaintScheduler;
+    private AmsFramePacer framePacer;
+    private BoundedLruCache<String, BufferedImage> imageCache;
+    private BoundedLruCache<TextMask.Key, TextMask> textCache;
 
-    private final Object frameLimiterLock = new Object();
-
-    private long lastPresentTime = 0;
 
-    public AppInstance(AppModel appModel, EmuCanvas emuCanvas) {
+    public AppInstance(AppModel appModel, PresentationTarget presentationTarget) {
         this.appModel = appModel;
-        this.emuCanvas = emuCanvas;
+        this.presentationTarget = presentationTarget;
     }
 
-    public EmuCanvas getEmuCanvas() {
-        return emuCanvas;
+    public PresentationTarget getPresentationTarget() {
+        return presentationTarget;
     }
 
     public AppModel getAppModel() {
         return appModel;
     }
 
+    public AmsGcPolicy getGcPolicy() {
+        return gcPolicy;
+    }
+
+    public AmsClock getClock() {
+        return clock;
+    }
+
+    public AmsRepaintScheduler getRepaintScheduler() {
+        return repaintScheduler;
+    }
+
+    public AmsFramePacer getFramePacer() {
+        return framePacer;
+    }
+
+    /**
+     * @return decoded immutable images, keyed by "res:" and the resource path or "sha256:" and the hash of the data
+     */
+    public BoundedLruCache<String, BufferedImage> getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * @return rendered strings, bounded by the total mask size in pixels
+     */
+    public BoundedLruCache<TextMask.Key, TextMask> getTextCache() {
+        return textCache;
+    }
+
     public BufferedImage getBackbufferImage() {
         return backbufferImage;
     }
 
+    /**
+     * @return the context Canvas paints with, reused for every paint
+     */
+    public Graphics getBackbufferGraphics() {
+        return backbufferGraphics;
+    }
+
     public void runOnAppThread(Runnable runnable) {
         appThreadExecutor.execute(runnable);
     }
@@ -51,13 +103,39 @@ public abstract class AppInstance implements AutoCloseable {
     public void initAppInstance() throws AmsException {
         appInstance = this;
 
-        appThreadExecutor = Executors.newSingleThreadExecutor();
+        appThreadExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(guestThreadGroup, runnable, "SKTemu app thread"));
+
+        gcPolicy = new AmsGcPolicy(
+                appModel.getDeviceProfile().getGcPolicy(),
+                appModel.getDeviceProfile().getGcMinInterval()
+        );
+
+        clock = new AmsClock(
+                appModel.getDeviceProfile().getClockMode(),
+                appModel.getDeviceProfile().getClockScale(),
+                guestThreadGroup
+        );
+
+        imageCache = new BoundedLruCache<>(
+                appModel.getDeviceProfile().getImageCacheSize() * 1024L,
+                image -> image.getWidth() * (long) image.getHeight() * 4
+        );
+
+        textCache = new BoundedLruCache<>(
+                appModel.getDeviceProfile().getTextCacheSize() * 1024L,
+                textMask -> textMask.width * (long) textMask.height
+        );
 
         backbufferImage = new BufferedImage(
-                emuCanvas.getBufferedImage().getWidth(),
-                emuCanvas.getBufferedImage().getHeight(),
+                presentationTarget.getFrameChain().getWidth(),
+                presentationTarget.getFrameChain().getHeight(),
                 BufferedImage.TYPE_INT_RGB
         );
+        backbufferGraphics = new Graphics(backbufferImage);
+        damageRegion = new DamageRegion(backbufferImage.getWidth(), backbufferImage.getHeight());
+        repaintScheduler = new AmsRepaintScheduler(this);
+        framePacer = new AmsFramePacer(appModel.getDeviceProfile().getMaxFps(), clock);
     }
 
     @Override
@@ -72,6 +150,27 @@ public abstract class AppInstance implements AutoCloseable {
                 }
             }
         } finally {
+            if (gcPolicy != null && gcPolicy.getSuppressedCount() > 0) {
+                System.out.printf("gc policy %s: %d guest gc calls performed, %d suppressed%n",
+                        gcPolicy.getMode(), gcPolicy.getPerformedCount(), gcPolicy.getSuppressedCount());
+            }
+            System.out.println("frames: " + presentationTarget.getFrameChain().getStatsString());
+            System.out.println("sprite transform cache: " + SpriteTransforms.getCacheStatsString());
+            if (imageCache != null) {
+                System.out.println("image cache: " + imageCache.getStatsString());
+            }
+            if (textCache != null) {
+                System.out.println("text cache: " + textCache.getStatsString());
+            }
+            if (framePacer != null) {
+                System.out.printf("frame pacer: %s, %d overruns%n",
+                        framePacer.getStatsString(), framePacer.getOverrunCount());
+            }
+            if (repaintScheduler != null) {
+                System.out.printf("repaint scheduler: %d requests, %d coalesced, %d paints%n",
+                        repaintScheduler.getRequestCount(), repaintScheduler.getCoalescedCount(),
+                        repaintScheduler.getPaintCount());
+            }
             appInstance = null;
         }
     }
@@ -85,36 +184,45 @@ public abstract class AppInstance implements AutoCloseable {
         appInstance.initAppInstance();
     }
 
+    /**
+     * Runs the app without any window, its frames go to the given target.
+     */
+    public static AppInstance launchAppHeadless(AppModel appModel, HeadlessPresentationTarget target) throws AmsException {
+        AppInstance appInstance = appModel.createAppInstance(target);
+        appInstance.initAppInstance();
+        return appInstance;
+    }
+
+    /**
+     * Marks a backbuffer area as changed, so that the next {@link #blitGraphics()} presents it.
+     */
+    public void addDamage(int x, int y, int width, int height) {
+        damageRegion.add(x, y, width, height);
+    }
+
     public void blitGraphics() {
-        int maxFps = getAppModel().getDeviceProfile().getMaxFps();
-
-        if (maxFps > 0) {
-            synchronized (frameLimiterLock) {
-                long presentTime = System.nanoTime();
-                long deltaTime = 1_000_000_000L / maxFps - (presentTime - lastPresentTime);
-
-                if (deltaTime > 0) {
-                    try {
-                        Thread.sleep(deltaTime / 1_000_000L, (int) (deltaTime % 1_000_000));
-                    } catch (InterruptedException ignored) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                }
+        Rectangle[] rects = damageRegion.take();
+        if (rects.length == 0) {
+            // nothing changed, so there is no frame to present or pace
+            return;
+        }
 
-                if (deltaTime < -20_000_000L) {
-                    lastPresentTime = presentTime - 20; // overrun
-                } else {
-                    lastPresentTime = presentTime + deltaTime;
-                }
+        try {
+            framePacer.waitForNextFrame();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            for (Rectangle rect : rects) {
+                damageRegion.add(rect.x, rect.y, rect.width, rect.height);
             }
+            return;
         }
 
-        synchronized (emuCanvas.getBufferedImage()) {
-            backbufferImage.copyData(emuCanvas.getBufferedImage().getRaster());
+        // serviceRepaints and XDisplay.refresh may come from different guest threads
+        FrameChain frameChain = presentationTarget.getFrameChain();
+        synchronized (frameChain) {
+            frameChain.publish(backbufferImage, rects);
+            presentationTarget.presentFrame(rects);
         }
-
-        runOnUiThread(emuCanvas::repaint);
     }
 
     public void onShutdown() {
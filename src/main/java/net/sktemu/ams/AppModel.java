@@ -1,6 +1,6 @@
 package net.sktemu.ams;
 
-import net.sktemu.ui.EmuCanvas;
+import net.sktemu.ui.PresentationTarget;
 
 import java.io.*;
 
@@ -56,7 +56,7 @@ public abstract class AppModel {
         return deviceProfileFile;
     }
 
-    public abstract File doCacheJar() throws AmsException;
+    public abstract AmsJarLocation doCacheJar() throws AmsException;
 
-    public abstract AppInstance createAppInstance(EmuCanvas canvas) throws AmsException;
+    public abstract AppInstance createAppInstance(PresentationTarget presentationTarget) throws AmsException;
 }
@@ -6,7 +6,7 @@ import net.sktemu.ams.AppInstance;
 import net.sktemu.ams.skvm.applet.AppletUtil;
 import net.sktemu.ams.skvm.applet.IApplet;
 import net.sktemu.rms.RmsManager;
-import net.sktemu.ui.EmuCanvas;
+import net.sktemu.ui.PresentationTarget;
 import net.sktemu.xceapi.XceApiManager;
 import org.kwis.msp.lcdui.Jlet;
 
@@ -27,8 +27,8 @@ public class SkvmAppInstance extends AppInstance {
 
     private IApplet applet;
 
-    public SkvmAppInstance(SkvmAppModel appModel, EmuCanvas emuCanvas) {
-        super(appModel, emuCanvas);
+    public SkvmAppInstance(SkvmAppModel appModel, PresentationTarget presentationTarget) {
+        super(appModel, presentationTarget);
     }
 
     public Display getDisplay() {
@@ -60,6 +60,14 @@ public class SkvmAppInstance extends AppInstance {
             throw new AmsException(e);
         }
 
+        if (appModel.getDeviceProfile().getResourcePrefetch()) {
+            classLoader.startResourcePrefetch();
+        }
+
+        if (appModel.getDeviceProfile().getEagerClassTransform()) {
+            classLoader.pretransformClasses();
+        }
+
         XceApiManager.initializeLCDUI(this);
 
         runOnAppThread(() -> {
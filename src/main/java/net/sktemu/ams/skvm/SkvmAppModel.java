@@ -1,9 +1,11 @@
 package net.sktemu.ams.skvm;
 
 import net.sktemu.ams.AmsException;
+import net.sktemu.ams.AmsJarLocation;
 import net.sktemu.ams.AppInstance;
 import net.sktemu.ams.AppModel;
-import net.sktemu.ui.EmuCanvas;
+import net.sktemu.ui.PresentationTarget;
+import net.sktemu.utils.HashUtils;
 import net.sktemu.utils.SharedConstants;
 
 import java.io.*;
@@ -11,6 +13,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.Properties;
 
 public class SkvmAppModel extends AppModel {
@@ -75,43 +79,118 @@ public class SkvmAppModel extends AppModel {
     }
 
     @Override
-    public File doCacheJar() throws AmsException {
+    public AmsJarLocation doCacheJar() throws AmsException {
         File jarPath = new File(getDataDir(), appID + ".jar");
         File cachedJarPath = new File(getCacheDir(), "app.jar");
+        File manifestPath = new File(getCacheDir(), "app.jar.manifest");
 
         System.out.println("cached jar path: " + cachedJarPath);
 
         if ("true".equals(System.getProperty("sktemu.assumePrecachedJars"))) {
-            return cachedJarPath;
+            return new AmsJarLocation(cachedJarPath, 0, null);
         }
 
-        try (FileInputStream fis = new FileInputStream(jarPath);
-             BufferedInputStream bis = new BufferedInputStream(fis)) {
+        Properties manifest = new Properties();
+        try (InputStream stream = new FileInputStream(manifestPath)) {
+            manifest.load(stream);
+        } catch (FileNotFoundException ignored) {
+        } catch (IOException e) {
+            System.err.println("failed to read cached jar manifest");
+            e.printStackTrace();
+        }
 
-            bis.mark(2);
-            byte[] signature = new byte[2];
-            if (bis.read(signature) != 2) {
-                throw new AmsException("Not enough data in jar input stream");
+        long sourceSize = jarPath.length();
+        long sourceMtime = jarPath.lastModified();
+        String manifestHash = manifest.getProperty("sourceHash");
+        boolean sizeMatches = Long.toString(sourceSize).equals(manifest.getProperty("sourceSize"));
+        boolean mtimeMatches = Long.toString(sourceMtime).equals(manifest.getProperty("sourceMtime"));
+
+        boolean inPlace = getDeviceProfile().getJarImage();
+
+        try {
+            String sourceHash = null;
+            if (sizeMatches && mtimeMatches) {
+                sourceHash = manifestHash;
+            } else if (sizeMatches || inPlace) {
+                // either the file was only touched, or we need the hash anyway
+                sourceHash = HashUtils.sha256(jarPath);
             }
-            bis.reset();
 
-            if (signature[0] != 'P' || signature[1] != 'K') {
-                if (bis.skip(32) != 32) {
-                    throw new AmsException("Failed to skip data in prefixed jar input stream");
+            long offset = getJarDataOffset(jarPath);
+
+            if (inPlace) {
+                writeJarManifest(manifestPath, sourceSize, sourceMtime, sourceHash, -1);
+                return new AmsJarLocation(jarPath, offset, sourceHash);
+            }
+
+            if (sourceHash != null && sourceHash.equals(manifestHash)
+                    && Long.toString(cachedJarPath.length()).equals(manifest.getProperty("cachedSize"))) {
+                if (!mtimeMatches) {
+                    writeJarManifest(manifestPath, sourceSize, sourceMtime, sourceHash, cachedJarPath.length());
                 }
+                return new AmsJarLocation(cachedJarPath, 0, sourceHash);
             }
 
-            try {
-                Files.copy(bis, cachedJarPath.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            } catch (IOException e) {
-                throw new AmsException("Failed to create cached jar file", e);
+            MessageDigest digest = HashUtils.newSha256();
+            try (FileInputStream fis = new FileInputStream(jarPath);
+                 DigestInputStream dis = new DigestInputStream(fis, digest);
+                 BufferedInputStream bis = new BufferedInputStream(dis)) {
+                // read the prefix instead of skipping it, so that it goes through the digest too
+                try {
+                    new DataInputStream(bis).readFully(new byte[(int) offset]);
+                } catch (EOFException e) {
+                    throw new AmsException("Failed to skip data in prefixed jar input stream", e);
+                }
+
+                try {
+                    Files.copy(bis, cachedJarPath.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    throw new AmsException("Failed to create cached jar file", e);
+                }
             }
-            return cachedJarPath;
+
+            sourceHash = HashUtils.toHex(digest.digest());
+            writeJarManifest(manifestPath, sourceSize, sourceMtime, sourceHash, cachedJarPath.length());
+
+            return new AmsJarLocation(cachedJarPath, 0, sourceHash);
         } catch (IOException e) {
             throw new AmsException("Failed to open the prefixed jar", e);
         }
     }
 
+    private static long getJarDataOffset(File jarPath) throws IOException, AmsException {
+        try (InputStream stream = new FileInputStream(jarPath)) {
+            byte[] signature = new byte[2];
+            if (stream.read(signature) != 2) {
+                throw new AmsException("Not enough data in jar input stream");
+            }
+
+            if (signature[0] != 'P' || signature[1] != 'K') {
+                return 32;
+            }
+            return 0;
+        }
+    }
+
+    private static void writeJarManifest(File manifestPath, long sourceSize, long sourceMtime, String sourceHash, long cachedSize) {
+        Properties manifest = new Properties();
+        manifest.setProperty("sourceSize", Long.toString(sourceSize));
+        manifest.setProperty("sourceMtime", Long.toString(sourceMtime));
+        if (sourceHash != null) {
+            manifest.setProperty("sourceHash", sourceHash);
+        }
+        if (cachedSize >= 0) {
+            manifest.setProperty("cachedSize", Long.toString(cachedSize));
+        }
+
+        try (OutputStream stream = new FileOutputStream(manifestPath)) {
+            manifest.store(stream, "SKTemu cached jar manifest");
+        } catch (IOException e) {
+            System.err.println("failed to write cached jar manifest");
+            e.printStackTrace();
+        }
+    }
+
     public String getAppProperty(String name) {
         return propertyTable.getProperty(name);
     }
@@ -121,7 +200,7 @@ public class SkvmAppModel extends AppModel {
     }
 
     @Override
-    public AppInstance createAppInstance(EmuCanvas canvas) throws AmsException {
-        return new SkvmAppInstance(this, canvas);
+    public AppInstance createAppInstance(PresentationTarget presentationTarget) throws AmsException {
+        return new SkvmAppInstance(this, presentationTarget);
     }
 }
@@ -0,0 +1,30 @@
+package net.sktemu.ams.transform;
+
+/**
+ * Looks up classes the pipeline hasn't loaded, so that passes can tell which class a member reference resolves to.
+ */
+public interface AmsClassHierarchy {
+    /**
+     * @return the internal name of the superclass, or null for java/lang/Object and classes that can't be found
+     */
+    String getSuperName(String className);
+
+    /**
+     * @return whether the class itself declares the method, inherited ones don't count
+     */
+    boolean declaresMethod(String className, String name, String descriptor);
+
+    /**
+     * Resolves a method reference the way the VM does for the class and its superclasses.
+     *
+     * @return the internal name of the declaring class, or null if none declares the method
+     */
+    default String resolveMethodOwner(String owner, String name, String descriptor) {
+        for (String className = owner; className != null; className = getSuperName(className)) {
+            if (declaresMethod(className, name, descriptor)) {
+                return className;
+            }
+        }
+        return null;
+    }
+}
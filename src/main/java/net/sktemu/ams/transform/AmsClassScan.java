@@ -0,0 +1,103 @@
+package net.sktemu.ams.transform;
+
+import org.objectweb.asm.ClassReader;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constant pool lookups on a class that hasn't been parsed yet.
+ */
+public class AmsClassScan {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+    private final ClassReader reader;
+    private final AmsClassHierarchy hierarchy;
+    private final char[] charBuffer;
+
+    /**
+     * @param hierarchy used to resolve method owners, or null to take every owner as the declaring class
+     */
+    public AmsClassScan(ClassReader reader, AmsClassHierarchy hierarchy) {
+        this.reader = reader;
+        this.hierarchy = hierarchy;
+        this.charBuffer = new char[reader.getMaxStringLength()];
+    }
+
+    public ClassReader getReader() {
+        return reader;
+    }
+
+    public boolean hasUtf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0 || reader.readByte(offset - 1) != CONSTANT_UTF8) continue;
+            if (reader.readUnsignedShort(offset) != bytes.length) continue;
+
+            boolean equal = true;
+            for (int j = 0; j < bytes.length; j++) {
+                if ((byte) reader.readByte(offset + 2 + j) != bytes[j]) {
+                    equal = false;
+                    break;
+                }
+            }
+            if (equal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the class declaring the method that a reference with the given owner resolves to,
+     * or null if there's no such method
+     */
+    public String resolveMethodOwner(String owner, String name, String descriptor) {
+        return hierarchy != null ? hierarchy.resolveMethodOwner(owner, name, descriptor) : owner;
+    }
+
+    /**
+     * @param owner the internal name of the owner class, or null to match methods of any class
+     */
+    public boolean hasMethodRef(String owner, String name, String descriptor) {
+        return findMethodRef(owner, null, name, descriptor);
+    }
+
+    /**
+     * Like {@link #hasMethodRef}, but also matches references through subclasses, e.g. a static method
+     * of java/lang/Thread called on a guest Thread subclass.
+     *
+     * @param declaringClass the internal name of the class that declares the method
+     */
+    public boolean hasResolvedMethodRef(String declaringClass, String name, String descriptor) {
+        return findMethodRef(null, declaringClass, name, descriptor);
+    }
+
+    private boolean findMethodRef(String owner, String declaringClass, String name, String descriptor) {
+        // the name is the most selective part, so bail out early if it isn't used at all
+        if (!hasUtf8(name)) {
+            return false;
+        }
+
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) continue;
+
+            int tag = reader.readByte(offset - 1);
+            if (tag != CONSTANT_METHODREF && tag != CONSTANT_INTERFACE_METHODREF) continue;
+
+            int nameAndTypeOffset = reader.getItem(reader.readUnsignedShort(offset + 2));
+            if (!name.equals(reader.readUTF8(nameAndTypeOffset, charBuffer))) continue;
+            if (!descriptor.equals(reader.readUTF8(nameAndTypeOffset + 2, charBuffer))) continue;
+            if (owner != null && !owner.equals(reader.readClass(offset, charBuffer))) continue;
+            if (declaringClass != null &&
+                    !declaringClass.equals(resolveMethodOwner(reader.readClass(offset, charBuffer), name, descriptor))) continue;
+
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+package net.sktemu.ams.transform;
+
+import net.sktemu.ams.AppDeviceProfile;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * A single guest bytecode rewrite, registered through {@link java.util.ServiceLoader}.
+ * <p>
+ * Passes are applied in registration order, each one wrapping the method visitor of the previous one.
+ */
+public interface AmsTransformPass {
+    /**
+     * @return the name used to enable or disable the pass in the device profile
+     */
+    String getName();
+
+    /**
+     * @return a number that has to be bumped whenever the output of the pass changes,
+     * so that stale bytecode caches are dropped
+     */
+    int getVersion();
+
+    boolean isEnabledByDefault(AppDeviceProfile deviceProfile);
+
+    /**
+     * Cheap check that runs before the class is parsed. Returning false skips the pass for this class.
+     */
+    boolean appliesTo(AmsClassScan scan);
+
+    /**
+     * @param scan the class being rewritten, the same one {@link #appliesTo} was given
+     */
+    MethodVisitor visitMethod(MethodVisitor visitor, AmsClassScan scan, int access, String name, String descriptor);
+}
@@ -0,0 +1,136 @@
+package net.sktemu.ams.transform;
+
+import net.sktemu.ams.AmsClassProcessor;
+import net.sktemu.ams.AppDeviceProfile;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AmsTransformPipeline {
+    private static final boolean passTimingEnabled =
+            "true".equals(System.getProperty("sktemu.transformPassTiming"));
+
+    private final List<AmsTransformPass> passes = new ArrayList<>();
+    private final AmsClassHierarchy hierarchy;
+
+    private final AtomicLong[] passNanos;
+    private final AtomicLong[] passClasses;
+    private final AtomicLong rewriteNanos = new AtomicLong();
+    private final AtomicLong rewrittenClasses = new AtomicLong();
+    private final AtomicLong skippedClasses = new AtomicLong();
+
+    /**
+     * @param hierarchy lets passes resolve method owners, may be null
+     */
+    public AmsTransformPipeline(AppDeviceProfile deviceProfile, AmsClassHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+
+        Map<String, Boolean> overrides = new HashMap<>();
+        for (String item : deviceProfile.getTransformPasses().split(",")) {
+            item = item.trim();
+            if (item.startsWith("-")) {
+                overrides.put(item.substring(1), false);
+            } else if (item.startsWith("+")) {
+                overrides.put(item.substring(1), true);
+            } else if (!item.isEmpty()) {
+                overrides.put(item, true);
+            }
+        }
+
+        for (AmsTransformPass pass : ServiceLoader.load(AmsTransformPass.class, AmsTransformPass.class.getClassLoader())) {
+            Boolean enabled = overrides.get(pass.getName());
+            if (enabled == null) {
+                enabled = pass.isEnabledByDefault(deviceProfile);
+            }
+            if (enabled) {
+                passes.add(pass);
+            }
+        }
+
+        passNanos = new AtomicLong[passes.size()];
+        passClasses = new AtomicLong[passes.size()];
+        for (int i = 0; i < passes.size(); i++) {
+            passNanos[i] = new AtomicLong();
+            passClasses[i] = new AtomicLong();
+        }
+    }
+
+    public List<AmsTransformPass> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+    /**
+     * @return a string that changes whenever the output of the pipeline may change
+     */
+    public String getFingerprint() {
+        StringBuilder sb = new StringBuilder("pipeline=").append(AmsClassProcessor.PIPELINE_VERSION);
+        for (AmsTransformPass pass : passes) {
+            sb.append(';').append(pass.getName()).append('@').append(pass.getVersion());
+        }
+        return sb.toString();
+    }
+
+    public byte[] transform(byte[] classFile) {
+        ClassReader classReader = new ClassReader(classFile);
+        AmsClassScan scan = new AmsClassScan(classReader, hierarchy);
+
+        List<AmsTransformPass> applicablePasses = new ArrayList<>(passes.size());
+        for (int i = 0; i < passes.size(); i++) {
+            AmsTransformPass pass = passes.get(i);
+
+            long startTime = System.nanoTime();
+            boolean applies = pass.appliesTo(scan);
+            passNanos[i].addAndGet(System.nanoTime() - startTime);
+
+            if (applies) {
+                applicablePasses.add(pass);
+                passClasses[i].incrementAndGet();
+            }
+        }
+
+        if (applicablePasses.isEmpty()) {
+            skippedClasses.incrementAndGet();
+            return classFile;
+        }
+
+        long startTime = System.nanoTime();
+        byte[] data;
+        if (passTimingEnabled) {
+            // one round per pass, so that the time of each can be told apart
+            data = classFile;
+            for (AmsTransformPass pass : applicablePasses) {
+                long passStartTime = System.nanoTime();
+                data = rewrite(new AmsClassScan(new ClassReader(data), hierarchy), Collections.singletonList(pass));
+                passNanos[passes.indexOf(pass)].addAndGet(System.nanoTime() - passStartTime);
+            }
+        } else {
+            data = rewrite(scan, applicablePasses);
+        }
+        rewriteNanos.addAndGet(System.nanoTime() - startTime);
+        rewrittenClasses.incrementAndGet();
+
+        return data;
+    }
+
+    private static byte[] rewrite(AmsClassScan scan, List<AmsTransformPass> passes) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        scan.getReader().accept(new AmsClassProcessor(classWriter, passes, scan), 0);
+        return classWriter.toByteArray();
+    }
+
+    public String getStatsString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d classes rewritten in %.1f ms, %d left untouched",
+                rewrittenClasses.get(), rewriteNanos.get() / 1_000_000.0, skippedClasses.get()));
+        for (int i = 0; i < passes.size(); i++) {
+            sb.append(String.format("%n  %s: %d classes, %.1f ms",
+                    passes.get(i).getName(), passClasses[i].get(), passNanos[i].get() / 1_000_000.0));
+        }
+        if (!passTimingEnabled) {
+            sb.append(String.format("%n  (pass times only cover the pre-scan, set sktemu.transformPassTiming=true to time rewrites per pass)"));
+        }
+        return sb.toString();
+    }
+}
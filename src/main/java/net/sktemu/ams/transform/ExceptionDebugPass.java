@@ -0,0 +1,70 @@
+package net.sktemu.ams.transform;
+
+import net.sktemu.ams.AppDeviceProfile;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.HashSet;
+
+public class ExceptionDebugPass implements AmsTransformPass {
+    private static final boolean exceptionDebugEnabled =
+            "true".equals(System.getProperty("sktemu.exceptionDebugEnable"));
+
+    private static class ExceptionDebugProcessor extends MethodVisitor {
+        private final HashSet<Label> catchLabels = new HashSet<>();
+
+        public ExceptionDebugProcessor(MethodVisitor parent) {
+            super(Opcodes.ASM9, parent);
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            super.visitTryCatchBlock(start, end, handler, type);
+
+            catchLabels.add(handler);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            super.visitLabel(label);
+
+            if (catchLabels.contains(label)) {
+                super.visitInsn(Opcodes.DUP);
+                super.visitMethodInsn(
+                        Opcodes.INVOKEVIRTUAL,
+                        "java/lang/Throwable",
+                        "printStackTrace",
+                        "()V",
+                        false
+                );
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "exceptionDebug";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public boolean isEnabledByDefault(AppDeviceProfile deviceProfile) {
+        return exceptionDebugEnabled;
+    }
+
+    @Override
+    public boolean appliesTo(AmsClassScan scan) {
+        // exception tables aren't visible from the constant pool
+        return true;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(MethodVisitor visitor, AmsClassScan scan, int access, String name, String descriptor) {
+        return new ExceptionDebugProcessor(visitor);
+    }
+}
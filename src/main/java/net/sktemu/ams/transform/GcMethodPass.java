@@ -0,0 +1,76 @@
+package net.sktemu.ams.transform;
+
+import net.sktemu.ams.AppDeviceProfile;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class GcMethodPass implements AmsTransformPass {
+    private static class GcMethodProcessor extends MethodVisitor {
+        public GcMethodProcessor(MethodVisitor parent) {
+            super(Opcodes.ASM9, parent);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if (opcode == Opcodes.INVOKESTATIC &&
+                    owner.equals("java/lang/System") &&
+                    name.equals("gc") &&
+                    descriptor.equals("()V")) {
+
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "net/sktemu/ams/AmsGcPolicy",
+                        "systemGc",
+                        "()V",
+                        false
+                );
+
+                return;
+            }
+
+            if (opcode == Opcodes.INVOKEVIRTUAL &&
+                    owner.equals("java/lang/Runtime") &&
+                    name.equals("gc") &&
+                    descriptor.equals("()V")) {
+
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "net/sktemu/ams/AmsGcPolicy",
+                        "runtimeGc",
+                        "(Ljava/lang/Runtime;)V",
+                        false
+                );
+
+                return;
+            }
+
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "gc";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public boolean isEnabledByDefault(AppDeviceProfile deviceProfile) {
+        return true;
+    }
+
+    @Override
+    public boolean appliesTo(AmsClassScan scan) {
+        return scan.hasMethodRef("java/lang/System", "gc", "()V")
+                || scan.hasMethodRef("java/lang/Runtime", "gc", "()V");
+    }
+
+    @Override
+    public MethodVisitor visitMethod(MethodVisitor visitor, AmsClassScan scan, int access, String name, String descriptor) {
+        return new GcMethodProcessor(visitor);
+    }
+}
@@ -0,0 +1,59 @@
+package net.sktemu.ams.transform;
+
+import net.sktemu.ams.AppDeviceProfile;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class ResourceMethodPass implements AmsTransformPass {
+    private static class ResourceMethodProcessor extends MethodVisitor {
+        public ResourceMethodProcessor(MethodVisitor parent) {
+            super(Opcodes.ASM9, parent);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if (opcode == Opcodes.INVOKEVIRTUAL &&
+                    owner.equals("java/lang/Class") &&
+                    name.equals("getResourceAsStream") &&
+                    descriptor.equals("(Ljava/lang/String;)Ljava/io/InputStream;")) {
+
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "net/sktemu/ams/AmsResourceManager",
+                        "getResourceAsStream",
+                        "(Ljava/lang/Class;Ljava/lang/String;)Ljava/io/InputStream;",
+                        false
+                );
+
+                return;
+            }
+
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "resource";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public boolean isEnabledByDefault(AppDeviceProfile deviceProfile) {
+        return true;
+    }
+
+    @Override
+    public boolean appliesTo(AmsClassScan scan) {
+        return scan.hasMethodRef("java/lang/Class", "getResourceAsStream", "(Ljava/lang/String;)Ljava/io/InputStream;");
+    }
+
+    @Override
+    public MethodVisitor visitMethod(MethodVisitor visitor, AmsClassScan scan, int access, String name, String descriptor) {
+        return new ResourceMethodProcessor(visitor);
+    }
+}
@@ -0,0 +1,56 @@
+package net.sktemu.ams.transform;
+
+import net.sktemu.ams.AppDeviceProfile;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class SecureUtilWorkaroundPass implements AmsTransformPass {
+    private static final String CHECK_METHOD_DESCRIPTOR = "(Ljavax/microedition/midlet/MIDlet;)Z";
+
+    private static class SecureUtilWorkaroundProcessor extends MethodVisitor {
+        private final MethodVisitor target;
+
+        public SecureUtilWorkaroundProcessor(MethodVisitor target) {
+            super(Opcodes.ASM9);
+
+            this.target = target;
+        }
+
+        @Override
+        public void visitCode() {
+            target.visitCode();
+            target.visitInsn(Opcodes.ICONST_1);
+            target.visitInsn(Opcodes.IRETURN);
+            target.visitMaxs(1, 0);
+            target.visitEnd();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "secureUtilWorkaround";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public boolean isEnabledByDefault(AppDeviceProfile deviceProfile) {
+        return deviceProfile.getSecureUtilWorkaround();
+    }
+
+    @Override
+    public boolean appliesTo(AmsClassScan scan) {
+        return scan.hasUtf8(CHECK_METHOD_DESCRIPTOR);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(MethodVisitor visitor, AmsClassScan scan, int access, String name, String descriptor) {
+        if ((access & Opcodes.ACC_STATIC) == Opcodes.ACC_STATIC && CHECK_METHOD_DESCRIPTOR.equals(descriptor)) {
+            return new SecureUtilWorkaroundProcessor(visitor);
+        }
+        return visitor;
+    }
+}
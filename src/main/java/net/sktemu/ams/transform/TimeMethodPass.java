@@ -0,0 +1,116 @@
+package net.sktemu.ams.transform;
+
+import net.sktemu.ams.AppDeviceProfile;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class TimeMethodPass implements AmsTransformPass {
+    private static class TimeMethodProcessor extends MethodVisitor {
+        private final AmsClassScan scan;
+
+        public TimeMethodProcessor(MethodVisitor parent, AmsClassScan scan) {
+            super(Opcodes.ASM9, parent);
+            this.scan = scan;
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if (opcode == Opcodes.INVOKESTATIC &&
+                    owner.equals("java/lang/System") &&
+                    name.equals("currentTimeMillis") &&
+                    descriptor.equals("()J")) {
+
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "net/sktemu/ams/AmsClock",
+                        "guestCurrentTimeMillis",
+                        "()J",
+                        false
+                );
+
+                return;
+            }
+
+            // guest Thread subclasses often call sleep unqualified, which compiles to their own name as the owner
+            if (opcode == Opcodes.INVOKESTATIC &&
+                    name.equals("sleep") &&
+                    (descriptor.equals("(J)V") || descriptor.equals("(JI)V")) &&
+                    "java/lang/Thread".equals(scan.resolveMethodOwner(owner, name, descriptor))) {
+
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "net/sktemu/ams/AmsClock",
+                        "guestSleep",
+                        descriptor,
+                        false
+                );
+
+                return;
+            }
+
+            // Object.wait(long), notify() and notifyAll() are final, so any owner resolves to them
+            if ((opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE) &&
+                    name.equals("wait") &&
+                    descriptor.equals("(J)V")) {
+
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "net/sktemu/ams/AmsClock",
+                        "guestWait",
+                        "(Ljava/lang/Object;J)V",
+                        false
+                );
+
+                return;
+            }
+
+            // the stepped clock has to know which timed waiters got notified
+            if ((opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE) &&
+                    (name.equals("notify") || name.equals("notifyAll")) &&
+                    descriptor.equals("()V")) {
+
+                super.visitMethodInsn(
+                        Opcodes.INVOKESTATIC,
+                        "net/sktemu/ams/AmsClock",
+                        name.equals("notify") ? "guestNotify" : "guestNotifyAll",
+                        "(Ljava/lang/Object;)V",
+                        false
+                );
+
+                return;
+            }
+
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "time";
+    }
+
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @Override
+    public boolean isEnabledByDefault(AppDeviceProfile deviceProfile) {
+        return true;
+    }
+
+    @Override
+    public boolean appliesTo(AmsClassScan scan) {
+        return scan.hasMethodRef("java/lang/System", "currentTimeMillis", "()J")
+                || scan.hasResolvedMethodRef("java/lang/Thread", "sleep", "(J)V")
+                || scan.hasResolvedMethodRef("java/lang/Thread", "sleep", "(JI)V")
+                || scan.hasMethodRef(null, "wait", "(J)V")
+                || scan.hasMethodRef(null, "notify", "()V")
+                || scan.hasMethodRef(null, "notifyAll", "()V");
+    }
+
+    @Override
+    public MethodVisitor visitMethod(MethodVisitor visitor, AmsClassScan scan, int access, String name, String descriptor) {
+        return new TimeMethodProcessor(visitor, scan);
+    }
+}
@@ -1,6 +1,8 @@
 package net.sktemu.launcher;
 
 import net.miginfocom.swing.MigLayout;
+import net.sktemu.ams.AmsClock;
+import net.sktemu.ams.AmsGcPolicy;
 import net.sktemu.ams.AppDeviceProfile;
 import net.sktemu.ams.AppModel;
 
@@ -17,12 +19,26 @@ public class DeviceProfileEditor extends JDialog {
         AppDeviceProfile deviceProfile = appModel.getDeviceProfile();
 
         JPanel mainPanel = new JPanel();
-        mainPanel.setLayout(new MigLayout("", "[][80,grow,fill]", "[][][][][nogrid]"));
+        mainPanel.setLayout(new MigLayout("", "[][80,grow,fill]", "[][][][][][][][][][][][][][][][][nogrid]"));
 
         JTextField tfScreenWidth = new JTextField(Integer.toString(deviceProfile.getScreenWidth()));
         JTextField tfScreenHeight = new JTextField(Integer.toString(deviceProfile.getScreenHeight()));
-        JTextField tfMaxFps = new JTextField(Integer.toString(deviceProfile.getMaxFps()));
+        JTextField tfMaxFps = new JTextField(Double.toString(deviceProfile.getMaxFps()));
+        JTextField tfResourceCacheSize = new JTextField(Integer.toString(deviceProfile.getResourceCacheSize()));
+        JTextField tfImageCacheSize = new JTextField(Integer.toString(deviceProfile.getImageCacheSize()));
+        JTextField tfTextCacheSize = new JTextField(Integer.toString(deviceProfile.getTextCacheSize()));
+        JComboBox<AmsGcPolicy.Mode> cbGcPolicy = new JComboBox<>(AmsGcPolicy.Mode.values());
+        cbGcPolicy.setSelectedItem(deviceProfile.getGcPolicy());
+        JTextField tfGcMinInterval = new JTextField(Integer.toString(deviceProfile.getGcMinInterval()));
+        JComboBox<AmsClock.Mode> cbClockMode = new JComboBox<>(AmsClock.Mode.values());
+        cbClockMode.setSelectedItem(deviceProfile.getClockMode());
+        JTextField tfClockScale = new JTextField(Double.toString(deviceProfile.getClockScale()));
+        JTextField tfTransformPasses = new JTextField(deviceProfile.getTransformPasses());
         JCheckBox cbSecureUtilWorkaround = new JCheckBox("SecureUtil Workaround", deviceProfile.getSecureUtilWorkaround());
+        JCheckBox cbEagerClassTransform = new JCheckBox("Transform all classes at launch", deviceProfile.getEagerClassTransform());
+        JCheckBox cbJarImage = new JCheckBox("Memory-mapped jar image", deviceProfile.getJarImage());
+        JCheckBox cbResourcePrefetch = new JCheckBox("Prefetch resources at launch", deviceProfile.getResourcePrefetch());
+        JCheckBox cbScale2x = new JCheckBox("Scale2x screen filter", deviceProfile.getScale2x());
 
         mainPanel.add(new JLabel("Screen Width:"));
         mainPanel.add(tfScreenWidth, "wrap");
@@ -30,7 +46,27 @@ public class DeviceProfileEditor extends JDialog {
         mainPanel.add(tfScreenHeight, "wrap");
         mainPanel.add(new JLabel("Max FPS:"));
         mainPanel.add(tfMaxFps, "wrap");
+        mainPanel.add(new JLabel("Resource cache (KiB):"));
+        mainPanel.add(tfResourceCacheSize, "wrap");
+        mainPanel.add(new JLabel("Image cache (KiB):"));
+        mainPanel.add(tfImageCacheSize, "wrap");
+        mainPanel.add(new JLabel("Text cache (KiB):"));
+        mainPanel.add(tfTextCacheSize, "wrap");
+        mainPanel.add(new JLabel("Guest GC policy:"));
+        mainPanel.add(cbGcPolicy, "wrap");
+        mainPanel.add(new JLabel("Min GC interval (ms):"));
+        mainPanel.add(tfGcMinInterval, "wrap");
+        mainPanel.add(new JLabel("Clock mode:"));
+        mainPanel.add(cbClockMode, "wrap");
+        mainPanel.add(new JLabel("Clock scale:"));
+        mainPanel.add(tfClockScale, "wrap");
+        mainPanel.add(new JLabel("Transform passes:"));
+        mainPanel.add(tfTransformPasses, "wrap");
         mainPanel.add(cbSecureUtilWorkaround, "spanx 2,wrap");
+        mainPanel.add(cbEagerClassTransform, "spanx 2,wrap");
+        mainPanel.add(cbJarImage, "spanx 2,wrap");
+        mainPanel.add(cbResourcePrefetch, "spanx 2,wrap");
+        mainPanel.add(cbScale2x, "spanx 2,wrap");
 
         Action okAction = new AbstractAction("OK") {
             @Override
@@ -38,8 +74,20 @@ public class DeviceProfileEditor extends JDialog {
                 try {
                     deviceProfile.setScreenWidth(Integer.parseInt(tfScreenWidth.getText()));
                     deviceProfile.setScreenHeight(Integer.parseInt(tfScreenHeight.getText()));
-                    deviceProfile.setMaxFps(Integer.parseInt(tfMaxFps.getText()));
+                    deviceProfile.setMaxFps(Double.parseDouble(tfMaxFps.getText()));
+                    deviceProfile.setResourceCacheSize(Integer.parseInt(tfResourceCacheSize.getText()));
+                    deviceProfile.setImageCacheSize(Integer.parseInt(tfImageCacheSize.getText()));
+                    deviceProfile.setTextCacheSize(Integer.parseInt(tfTextCacheSize.getText()));
+                    deviceProfile.setGcPolicy((AmsGcPolicy.Mode) cbGcPolicy.getSelectedItem());
+                    deviceProfile.setGcMinInterval(Integer.parseInt(tfGcMinInterval.getText()));
+                    deviceProfile.setClockMode((AmsClock.Mode) cbClockMode.getSelectedItem());
+                    deviceProfile.setClockScale(Double.parseDouble(tfClockScale.getText()));
+                    deviceProfile.setTransformPasses(tfTransformPasses.getText().trim());
                     deviceProfile.setSecureUtilWorkaround(cbSecureUtilWorkaround.isSelected());
+                    deviceProfile.setEagerClassTransform(cbEagerClassTransform.isSelected());
+                    deviceProfile.setJarImage(cbJarImage.isSelected());
+                    deviceProfile.setResourcePrefetch(cbResourcePrefetch.isSelected());
+                    deviceProfile.setScale2x(cbScale2x.isSelected());
                 } catch (NumberFormatException ex) {
                     JOptionPane.showMessageDialog(
                             DeviceProfileEditor.this,
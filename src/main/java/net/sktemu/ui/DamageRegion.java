@@ -0,0 +1,104 @@
+package net.sktemu.ui;
+
+import java.awt.*;
+
+/**
+ * Thread-safe set of dirty rectangles within a fixed-size surface.
+ * <p>
+ * Rectangles are merged whenever their bounding box doesn't cover more than the two of them do,
+ * and everything collapses into one bounding box once there are too many of them to be worth tracking.
+ */
+public class DamageRegion {
+    private static final int MAX_RECTS = 8;
+
+    private final int width;
+    private final int height;
+
+    private final Rectangle[] rects = new Rectangle[MAX_RECTS];
+    private int numRects = 0;
+
+    public DamageRegion(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public synchronized void add(int x, int y, int w, int h) {
+        int x1 = Math.max(x, 0);
+        int y1 = Math.max(y, 0);
+        int x2 = (int) Math.min((long) x + w, width);
+        int y2 = (int) Math.min((long) y + h, height);
+        if (x1 >= x2 || y1 >= y2) return;
+
+        Rectangle rect = new Rectangle(x1, y1, x2 - x1, y2 - y1);
+
+        boolean merged;
+        do {
+            merged = false;
+            for (int i = 0; i < numRects; i++) {
+                Rectangle union = rects[i].union(rect);
+                if (area(union) <= area(rects[i]) + area(rect)) {
+                    rect = union;
+                    rects[i] = rects[--numRects];
+                    rects[numRects] = null;
+                    merged = true;
+                    break;
+                }
+            }
+        } while (merged);
+
+        if (numRects == MAX_RECTS) {
+            for (int i = 0; i < numRects; i++) {
+                rect = rect.union(rects[i]);
+                rects[i] = null;
+            }
+            numRects = 0;
+        }
+
+        rects[numRects++] = rect;
+    }
+
+    public void addAll() {
+        add(0, 0, width, height);
+    }
+
+    public synchronized boolean isEmpty() {
+        return numRects == 0;
+    }
+
+    /**
+     * Returns the bounding box of all dirty rectangles and clears the region.
+     *
+     * @return the bounding box, or null if the region is empty
+     */
+    public synchronized Rectangle takeBounds() {
+        if (numRects == 0) return null;
+
+        Rectangle bounds = new Rectangle(rects[0]);
+        for (int i = 1; i < numRects; i++) {
+            bounds.add(rects[i]);
+        }
+        clear();
+        return bounds;
+    }
+
+    /**
+     * Returns the dirty rectangles and clears the region.
+     */
+    public synchronized Rectangle[] take() {
+        Rectangle[] result = new Rectangle[numRects];
+        System.arraycopy(rects, 0, result, 0, numRects);
+        clear();
+        return result;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < numRects; i++) {
+            rects[i] = null;
+        }
+        numRects = 0;
+    }
+
+    private static long area(Rectangle rect) {
+        return (long) rect.width * rect.height;
+    }
+}
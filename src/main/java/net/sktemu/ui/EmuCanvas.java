@@ -2,30 +2,57 @@ package net.sktemu.ui;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
 
-public class EmuCanvas extends JComponent {
-    private final BufferedImage bufferedImage;
+public class EmuCanvas extends JComponent implements PresentationTarget {
+    private final FrameChain frameChain;
+    private final FrameScaler frameScaler;
 
-    public EmuCanvas(int width, int height) {
-        this.bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    public EmuCanvas(int width, int height, boolean scale2x) {
+        this.frameChain = new FrameChain(width, height);
+        this.frameScaler = new FrameScaler(frameChain, this, scale2x);
         setPreferredSize(new Dimension(width * 2, height * 2));
+
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                frameScaler.invalidate();
+            }
+        });
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        synchronized (bufferedImage) {
-            Dimension size = getSize();
+        FrameChain output = frameScaler.getOutput();
+        if (output == null) return;
+
+        BufferedImage bufferedImage = output.acquireFrontBuffer();
+        Dimension size = getSize();
+        if (bufferedImage.getWidth() == size.width && bufferedImage.getHeight() == size.height) {
+            g.drawImage(bufferedImage, 0, 0, null);
+        } else {
+            // still scaled for the previous size, until the scaler catches up with the resize
             g.drawImage(bufferedImage,
                     0, 0, size.width, size.height,
                     0, 0, bufferedImage.getWidth(), bufferedImage.getHeight(),
-                    this);
+                    null);
         }
     }
 
-    public BufferedImage getBufferedImage() {
-        return bufferedImage;
+    /**
+     * Shows the given areas of the newest frame of the chain, once they are scaled.
+     */
+    @Override
+    public void presentFrame(Rectangle[] damage) {
+        frameScaler.present(damage);
+    }
+
+    @Override
+    public FrameChain getFrameChain() {
+        return frameChain;
     }
 }
@@ -1,5 +1,6 @@
 package net.sktemu.ui;
 
+import net.sktemu.ams.AmsFramePacer;
 import net.sktemu.ams.AppInstance;
 import net.sktemu.ams.AppModel;
 
@@ -18,11 +19,25 @@ public class EmuUIFrame extends JFrame {
     private HashSet<Integer> pressedKeys = new HashSet<Integer>();
 
     public EmuUIFrame(AppModel appModel) {
-        setTitle("SKTemu \u2013 " + appModel.getAppTitle());
+        String title = "SKTemu \u2013 " + appModel.getAppTitle();
+        setTitle(title);
+
+        Timer statsTimer = new Timer(1000, e -> {
+            AmsFramePacer framePacer = appInstance != null ? appInstance.getFramePacer() : null;
+            if (framePacer != null) {
+                setTitle(String.format("%s (%.1f fps, p50 %.1f / p95 %.1f / p99 %.1f ms)", title,
+                        framePacer.getCurrentFps(),
+                        framePacer.getFrameTimePercentile(50),
+                        framePacer.getFrameTimePercentile(95),
+                        framePacer.getFrameTimePercentile(99)));
+            }
+        });
+        statsTimer.start();
 
         canvas = new EmuCanvas(
                 appModel.getDeviceProfile().getScreenWidth(),
-                appModel.getDeviceProfile().getScreenHeight()
+                appModel.getDeviceProfile().getScreenHeight(),
+                appModel.getDeviceProfile().getScale2x()
         );
         setContentPane(canvas);
 
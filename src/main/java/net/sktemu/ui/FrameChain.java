@@ -0,0 +1,124 @@
+package net.sktemu.ui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Triple-buffered handoff of complete frames from a single writer (the app thread)
+ * to a single reader (the EDT), neither of which ever waits for the other.
+ * <p>
+ * The writer fills the back buffer and swaps it with the middle one, the reader swaps the middle
+ * buffer with the front one whenever a fresh frame has been published since its last swap.
+ */
+public class FrameChain {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final BufferedImage[] buffers = new BufferedImage[3];
+    private final int[][] pixels = new int[3][];
+
+    // areas each buffer is missing compared to the latest published frame, only touched by the writer
+    private final DamageRegion[] staleRegions = new DamageRegion[3];
+
+    // index of the middle buffer, plus FRESH if it holds a frame the reader hasn't seen yet
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int backIndex = 0;
+    private int frontIndex = 2;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong presentedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong duplicatedCount = new AtomicLong();
+
+    public FrameChain(int width, int height) {
+        for (int i = 0; i < 3; i++) {
+            buffers[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels[i] = ((DataBufferInt) buffers[i].getRaster().getDataBuffer()).getData();
+            staleRegions[i] = new DamageRegion(width, height);
+        }
+    }
+
+    public int getWidth() {
+        return buffers[0].getWidth();
+    }
+
+    public int getHeight() {
+        return buffers[0].getHeight();
+    }
+
+    /**
+     * Copies the damaged areas of the source into the back buffer, along with whatever the back buffer
+     * missed while it was in use elsewhere, and publishes it as the newest frame.
+     * Must only be called from one thread at a time.
+     *
+     * @param source a TYPE_INT_RGB image of the same size as the chain
+     */
+    public void publish(BufferedImage source, Rectangle[] damage) {
+        int[] src = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+        int[] dst = pixels[backIndex];
+        int stride = getWidth();
+
+        DamageRegion staleRegion = staleRegions[backIndex];
+        for (Rectangle rect : damage) {
+            staleRegion.add(rect.x, rect.y, rect.width, rect.height);
+        }
+        for (Rectangle rect : staleRegion.take()) {
+            for (int y = rect.y; y < rect.y + rect.height; y++) {
+                int offset = y * stride + rect.x;
+                System.arraycopy(src, offset, dst, offset, rect.width);
+            }
+        }
+
+        for (int i = 0; i < 3; i++) {
+            if (i == backIndex) continue;
+            for (Rectangle rect : damage) {
+                staleRegions[i].add(rect.x, rect.y, rect.width, rect.height);
+            }
+        }
+
+        int previous = middle.getAndSet(backIndex | FRESH);
+        if ((previous & FRESH) != 0) {
+            droppedCount.incrementAndGet();
+        }
+        backIndex = previous & INDEX_MASK;
+        publishedCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the newest complete frame. The image stays valid until the next call.
+     * Must only be called from the reader thread.
+     */
+    public BufferedImage acquireFrontBuffer() {
+        if ((middle.get() & FRESH) != 0) {
+            frontIndex = middle.getAndSet(frontIndex) & INDEX_MASK;
+            presentedCount.incrementAndGet();
+        } else {
+            duplicatedCount.incrementAndGet();
+        }
+        return buffers[frontIndex];
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    public long getPresentedCount() {
+        return presentedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getDuplicatedCount() {
+        return duplicatedCount.get();
+    }
+
+    public String getStatsString() {
+        return String.format("%d published, %d presented, %d dropped, %d duplicated",
+                getPublishedCount(), getPresentedCount(), getDroppedCount(), getDuplicatedCount());
+    }
+}
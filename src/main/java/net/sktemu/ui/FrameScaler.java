@@ -0,0 +1,202 @@
+package net.sktemu.ui;
+
+import net.sktemu.ui.raster.Upscalers;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Scales frames from a {@link FrameChain} to the size of a component on a worker thread,
+ * into a second chain of that size which the EDT only has to copy 1:1.
+ * <p>
+ * The worker is the reader of the input chain and the writer of the output chain.
+ * Only the damaged areas are rescaled, large areas are split into row tiles scaled in parallel.
+ */
+public class FrameScaler {
+    private static final int PARALLEL_THRESHOLD = 512 * 512;
+    private static final int TILE_ROWS = 64;
+
+    private final FrameChain input;
+    private final JComponent component;
+    private final boolean scale2x;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Frame scaler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    // in input coordinates
+    private final DamageRegion pendingDamage;
+
+    // published once it holds a complete frame
+    private volatile FrameChain output;
+
+    // only touched by the worker
+    private int outputWidth, outputHeight;
+    private BufferedImage scaledImage;
+    private int[] scaledPixels;
+    private int[] doubledPixels;
+    private int[] columnMap, rowMap;
+
+    public FrameScaler(FrameChain input, JComponent component, boolean scale2x) {
+        this.input = input;
+        this.component = component;
+        this.scale2x = scale2x;
+        this.pendingDamage = new DamageRegion(input.getWidth(), input.getHeight());
+        if (scale2x) {
+            doubledPixels = new int[input.getWidth() * 2 * input.getHeight() * 2];
+        }
+    }
+
+    /**
+     * Schedules rescaling the given areas of the newest frame of the input chain.
+     */
+    public void present(Rectangle[] damage) {
+        for (Rectangle rect : damage) {
+            pendingDamage.add(rect.x, rect.y, rect.width, rect.height);
+        }
+        schedule();
+    }
+
+    /**
+     * Schedules a check of the component size, call when it changes.
+     */
+    public void invalidate() {
+        schedule();
+    }
+
+    private void schedule() {
+        if (queued.compareAndSet(false, true)) {
+            worker.execute(this::scale);
+        }
+    }
+
+    /**
+     * @return the chain of scaled frames, read by the EDT, or null until the first frame is scaled
+     */
+    public FrameChain getOutput() {
+        return output;
+    }
+
+    private void scale() {
+        queued.set(false);
+
+        int width = component.getWidth();
+        int height = component.getHeight();
+        if (width <= 0 || height <= 0) return;
+
+        Rectangle[] damage;
+        boolean resized = scaledImage == null || width != outputWidth || height != outputHeight;
+        if (resized) {
+            resize(width, height);
+            pendingDamage.clear();
+            damage = new Rectangle[]{new Rectangle(0, 0, input.getWidth(), input.getHeight())};
+        } else {
+            damage = pendingDamage.take();
+            if (damage.length == 0) return;
+        }
+
+        int[] framePixels = ((DataBufferInt) input.acquireFrontBuffer().getRaster().getDataBuffer()).getData();
+
+        Rectangle[] scaledDamage = new Rectangle[damage.length];
+        for (int i = 0; i < damage.length; i++) {
+            scaledDamage[i] = scaleArea(framePixels, damage[i]);
+        }
+
+        FrameChain chain = resized ? new FrameChain(width, height) : output;
+        chain.publish(scaledImage, scaledDamage);
+        output = chain;
+
+        SwingUtilities.invokeLater(() -> {
+            if (resized) {
+                component.repaint();
+                return;
+            }
+            for (Rectangle rect : scaledDamage) {
+                component.repaint(rect);
+            }
+        });
+    }
+
+    private void resize(int width, int height) {
+        outputWidth = width;
+        outputHeight = height;
+        scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        scaledPixels = ((DataBufferInt) scaledImage.getRaster().getDataBuffer()).getData();
+
+        int factor = scale2x ? 2 : 1;
+        columnMap = Upscalers.buildMap(input.getWidth() * factor, width);
+        rowMap = Upscalers.buildMap(input.getHeight() * factor, height);
+    }
+
+    /**
+     * @return the area of the output that changed
+     */
+    private Rectangle scaleArea(int[] framePixels, Rectangle area) {
+        int frameWidth = input.getWidth();
+        int frameHeight = input.getHeight();
+
+        int[] src = framePixels;
+        int srcWidth = frameWidth;
+        int srcHeight = frameHeight;
+        int x1 = area.x, y1 = area.y;
+        int x2 = area.x + area.width, y2 = area.y + area.height;
+
+        if (scale2x) {
+            // the filter looks at the neighbours, so they are affected too
+            int ex1 = Math.max(0, x1 - 1), ey1 = Math.max(0, y1 - 1);
+            int ex2 = Math.min(frameWidth, x2 + 1), ey2 = Math.min(frameHeight, y2 + 1);
+            forTiles(ey1, ey2, (ex2 - ex1) * (ey2 - ey1) * 4, (from, to) ->
+                    Upscalers.scale2x(framePixels, frameWidth, frameHeight, doubledPixels, ex1, from, ex2, to));
+
+            src = doubledPixels;
+            srcWidth = frameWidth * 2;
+            srcHeight = frameHeight * 2;
+            x1 = ex1 * 2;
+            y1 = ey1 * 2;
+            x2 = ex2 * 2;
+            y2 = ey2 * 2;
+        }
+
+        int dx1 = Upscalers.mapToDestination(x1, srcWidth, outputWidth);
+        int dy1 = Upscalers.mapToDestination(y1, srcHeight, outputHeight);
+        int dx2 = Upscalers.mapToDestination(x2, srcWidth, outputWidth);
+        int dy2 = Upscalers.mapToDestination(y2, srcHeight, outputHeight);
+        if (dx1 >= dx2 || dy1 >= dy2) {
+            return new Rectangle();
+        }
+
+        int[] scaleSrc = src;
+        int scaleStride = srcWidth;
+        forTiles(dy1, dy2, (dx2 - dx1) * (dy2 - dy1), (from, to) ->
+                Upscalers.scaleNearest(scaleSrc, scaleStride, scaledPixels, outputWidth,
+                        columnMap, rowMap, dx1, from, dx2, to));
+
+        return new Rectangle(dx1, dy1, dx2 - dx1, dy2 - dy1);
+    }
+
+    private static void forTiles(int y1, int y2, int pixelCount, RowRangeTask task) {
+        if (pixelCount < PARALLEL_THRESHOLD) {
+            task.run(y1, y2);
+            return;
+        }
+
+        int numTiles = (y2 - y1 + TILE_ROWS - 1) / TILE_ROWS;
+        IntStream.range(0, numTiles).parallel().forEach(tile -> {
+            int from = y1 + tile * TILE_ROWS;
+            task.run(from, Math.min(y2, from + TILE_ROWS));
+        });
+    }
+
+    private interface RowRangeTask {
+        void run(int from, int to);
+    }
+}
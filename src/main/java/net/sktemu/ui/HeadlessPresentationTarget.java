@@ -0,0 +1,67 @@
+package net.sktemu.ui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Keeps frames in memory instead of showing them, for running apps without a display.
+ */
+public class HeadlessPresentationTarget implements PresentationTarget {
+    public interface FrameListener {
+        /**
+         * Called on the app thread for every presented frame.
+         * The image is only valid during the call and must not be modified.
+         */
+        void onFrame(BufferedImage frame, Rectangle[] damage);
+    }
+
+    private final FrameChain frameChain;
+    private final FrameListener frameListener;
+
+    private BufferedImage latestFrame;
+    private long frameCount = 0;
+
+    public HeadlessPresentationTarget(int width, int height, FrameListener frameListener) {
+        this.frameChain = new FrameChain(width, height);
+        this.frameListener = frameListener;
+    }
+
+    public HeadlessPresentationTarget(int width, int height) {
+        this(width, height, null);
+    }
+
+    @Override
+    public FrameChain getFrameChain() {
+        return frameChain;
+    }
+
+    @Override
+    public void presentFrame(Rectangle[] damage) {
+        BufferedImage frame;
+        synchronized (this) {
+            frame = frameChain.acquireFrontBuffer();
+            latestFrame = frame;
+            frameCount++;
+        }
+
+        if (frameListener != null) {
+            frameListener.onFrame(frame, damage);
+        }
+    }
+
+    /**
+     * @return a copy of the newest presented frame, or null if there wasn't any yet
+     */
+    public synchronized BufferedImage copyLatestFrame() {
+        if (latestFrame == null) return null;
+
+        BufferedImage copy = new BufferedImage(latestFrame.getWidth(), latestFrame.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        latestFrame.copyData(copy.getRaster());
+        return copy;
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+}
@@ -0,0 +1,19 @@
+package net.sktemu.ui;
+
+import java.awt.*;
+
+/**
+ * Where the frames an app draws end up: a window, or memory when running headless.
+ */
+public interface PresentationTarget {
+    /**
+     * @return the chain the app instance publishes complete frames into, it has the screen size
+     */
+    FrameChain getFrameChain();
+
+    /**
+     * Called after each frame is published into the chain, with the areas that changed.
+     * May be called from different app threads, but never concurrently.
+     */
+    void presentFrame(Rectangle[] damage);
+}
@@ -1,5 +1,7 @@
 package net.sktemu.ui.imageio;
 
+import net.sktemu.ui.raster.SoftRasterizer;
+
 import javax.imageio.IIOException;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -12,14 +14,54 @@ import java.awt.color.ColorSpace;
 import java.awt.image.*;
 import java.io.IOException;
 import java.nio.ByteOrder;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.stream.IntStream;
 
 public class LbmReader extends ImageReader {
     private static final ColorSpace COLORSPACE_SRGB = ColorSpace.getInstance(ColorSpace.CS_sRGB);
 
     private static final ImageTypeSpecifier TYPE_SRGB_ALPHA = ImageTypeSpecifier.createInterleaved(COLORSPACE_SRGB, new int[]{0, 1, 2, 3}, DataBuffer.TYPE_BYTE, true, false);
 
+    private static final int PARALLEL_THRESHOLD = 128 * 128;
+    private static final int BANDS_PER_STRIPE = 8;
+
+    // byte n of each entry holds bit n of the index, so that a column of 8 pixels can be expanded at once
+    private static final long[] BIT_SPREAD = new long[256];
+
+    // indexed by transparent << 2 | high << 1 | low
+    private static final int[] GRAY_PALETTE = new int[8];
+
+    private static final int[] RGB332_PALETTE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            long spread = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((i & (1 << bit)) != 0) {
+                    spread |= 1L << (bit * 8);
+                }
+            }
+            BIT_SPREAD[i] = spread;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            int level = ~(((i >> 1) * 0xF0) | ((i & 1) * 0x0F)) & 0xFF;
+            GRAY_PALETTE[i] = 0xFF000000 | (level << 16) | (level << 8) | level;
+            GRAY_PALETTE[i | 4] = 0;
+        }
+
+        for (int i = 0; i < 256; i++) {
+            int red = (i >>> 5) & 7;
+            int green = (i >>> 2) & 7;
+            int blue = i & 3;
+            RGB332_PALETTE[i] = 0xFF000000
+                    | ((red * 36 + (red >>> 1)) << 16)
+                    | ((green * 36 + (green >>> 1)) << 8)
+                    | (blue * 85);
+        }
+    }
+
     private ImageInputStream imageInput;
 
     private LbmHeaderData header;
@@ -89,7 +131,13 @@ public class LbmReader extends ImageReader {
     @Override
     public Iterator<ImageTypeSpecifier> getImageTypes(int imageIndex) throws IOException {
         readHeader();
-        return Collections.singleton(TYPE_SRGB_ALPHA).iterator();
+
+        // the int types are what Image normalizes to anyway, and what we can decode into directly
+        return Arrays.asList(
+                ImageTypeSpecifier.createFromBufferedImageType(
+                        header.enableAlpha ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB),
+                TYPE_SRGB_ALPHA
+        ).iterator();
     }
 
     @Override
@@ -115,113 +163,134 @@ public class LbmReader extends ImageReader {
         Rectangle destRegion = new Rectangle();
         computeRegions(param, width, height, destination, srcRegion, destRegion);
 
-        WritableRaster raster = destination.getRaster().createWritableChild(destRegion.x, destRegion.y, destRegion.width, destRegion.height, 0, 0, null);
+        // decode straight into the destination when it is a whole int-packed image, otherwise go through setRGB
+        boolean direct = destination.getWidth() == width && destination.getHeight() == height
+                && srcRegion.equals(new Rectangle(0, 0, width, height))
+                && destRegion.equals(srcRegion)
+                && SoftRasterizer.forImage(destination) != null;
+        int[] pixels = direct
+                ? ((DataBufferInt) destination.getRaster().getDataBuffer()).getData()
+                : new int[width * height];
+
+        int numBands = (height + 7) / 8;
+        int planeSize = numBands * width;
 
         if (header.bitDepth == 2) {
-            int numScanlines = (height + 7) / 8;
-            if (width * numScanlines != header.bytesPerPlane) {
+            if (planeSize != header.bytesPerPlane) {
                 throw new IIOException("Wrong number of bytes per plane");
             }
 
-            byte[] highPlaneData = new byte[header.bytesPerPlane];
-            byte[] lowPlaneData = new byte[header.bytesPerPlane];
-            byte[] alphaPlaneData = header.enableAlpha ? new byte[header.bytesPerPlane] : null;
+            byte[] highPlaneData = new byte[planeSize];
+            byte[] lowPlaneData = new byte[planeSize];
+            byte[] alphaPlaneData = header.enableAlpha ? new byte[planeSize] : null;
 
             imageInput.readFully(highPlaneData);
             imageInput.readFully(lowPlaneData);
-            if (header.enableAlpha) {
+            if (alphaPlaneData != null) {
                 imageInput.readFully(alphaPlaneData);
             }
 
-            byte[] resultPixelData = new byte[destRegion.width * destRegion.height * 4];
-
-            for (int y = 0; y < srcRegion.height; y++) {
-                int srcY = y + srcRegion.y;
-
-                for (int x = 0; x < srcRegion.width; x++) {
-                    int srcX = x + srcRegion.x;
-
-                    int byteIndex = srcX + (srcY >> 3) * width;
-                    int bitIndex = srcY & 7;
-
-                    int alpha = 0xFF;
-                    if (alphaPlaneData != null) {
-                        if (((alphaPlaneData[byteIndex] >> bitIndex) & 1) == 1) {
-                            alpha = 0;
-                        }
-                    }
-
-                    int color = ~((((highPlaneData[byteIndex] >>> bitIndex) & 1) * 0xF0)
-                            | (((lowPlaneData[byteIndex] >>> bitIndex) & 1) * 0x0F));
-
-                    resultPixelData[(x + y * destRegion.width) * 4] = (byte) color;
-                    resultPixelData[(x + y * destRegion.width) * 4 + 1] = (byte) color;
-                    resultPixelData[(x + y * destRegion.width) * 4 + 2] = (byte) color;
-                    resultPixelData[(x + y * destRegion.width) * 4 + 3] = (byte) alpha;
-                }
-
-                if (abortRequested()) {
-                    processReadAborted();
-                    break;
-                }
-            }
-
-            raster.setDataElements(0, 0, destRegion.width, destRegion.height, resultPixelData);
+            decodeBands(numBands, width, (fromBand, toBand) ->
+                    decodeGray(highPlaneData, lowPlaneData, alphaPlaneData, pixels, width, height, fromBand, toBand));
         } else {
             if (width * height != header.bytesPerPlane) {
                 throw new IIOException("Wrong number of bytes per plane");
             }
 
-            int numScanlines = (height + 7) / 8;
-
             byte[] rgbPlaneData = new byte[header.bytesPerPlane];
-            byte[] alphaPlaneData = header.enableAlpha ? new byte[numScanlines * width] : null;
+            byte[] alphaPlaneData = header.enableAlpha ? new byte[planeSize] : null;
 
             imageInput.readFully(rgbPlaneData);
-            if (header.enableAlpha) {
+            if (alphaPlaneData != null) {
                 imageInput.readFully(alphaPlaneData);
             }
 
-            byte[] resultPixelData = new byte[destRegion.width * destRegion.height * 4];
+            decodeBands(numBands, width, (fromBand, toBand) ->
+                    decodeRgb332(rgbPlaneData, alphaPlaneData, pixels, width, height, fromBand, toBand));
+        }
 
-            for (int y = 0; y < srcRegion.height; y++) {
-                int srcY = y + srcRegion.y;
+        if (abortRequested()) {
+            processReadAborted();
+            return destination;
+        }
 
-                for (int x = 0; x < srcRegion.width; x++) {
-                    int srcX = x + srcRegion.x;
+        if (!direct) {
+            destination.setRGB(destRegion.x, destRegion.y, destRegion.width, destRegion.height,
+                    pixels, srcRegion.y * width + srcRegion.x, width);
+        }
 
-                    int byteIndex = srcX + srcY * width;
+        return destination;
+    }
 
-                    int color = rgbPlaneData[byteIndex];
-                    int red = (color >>> 5) & 7;
-                    int green = (color >>> 2) & 7;
-                    int blue = color & 3;
+    private interface BandDecoder {
+        void decode(int fromBand, int toBand);
+    }
 
-                    int aByteIndex = srcX + (srcY >> 3) * width;
-                    int bitIndex = srcY & 7;
+    private void decodeBands(int numBands, int width, BandDecoder decoder) {
+        if (numBands * 8 * width < PARALLEL_THRESHOLD) {
+            decoder.decode(0, numBands);
+            return;
+        }
 
-                    int alpha = 0xFF;
-                    if (alphaPlaneData != null) {
-                        if (((alphaPlaneData[aByteIndex] >> bitIndex) & 1) == 1) {
-                            alpha = 0;
-                        }
-                    }
+        int numStripes = (numBands + BANDS_PER_STRIPE - 1) / BANDS_PER_STRIPE;
+        IntStream.range(0, numStripes).parallel().forEach(stripe -> {
+            if (abortRequested()) return;
 
-                    resultPixelData[(x + y * destRegion.width) * 4] = (byte) (red * 36 + (red >>> 1));
-                    resultPixelData[(x + y * destRegion.width) * 4 + 1] = (byte) (green * 36 + (green >>> 1));
-                    resultPixelData[(x + y * destRegion.width) * 4 + 2] = (byte) (blue * 85);
-                    resultPixelData[(x + y * destRegion.width) * 4 + 3] = (byte) alpha;
+            int fromBand = stripe * BANDS_PER_STRIPE;
+            decoder.decode(fromBand, Math.min(numBands, fromBand + BANDS_PER_STRIPE));
+        });
+    }
+
+    /**
+     * Planes are stored in bands of 8 rows, with one byte holding a column of 8 pixels.
+     */
+    private static void decodeGray(byte[] highPlane, byte[] lowPlane, byte[] alphaPlane,
+                                   int[] pixels, int width, int height, int fromBand, int toBand) {
+        for (int band = fromBand; band < toBand; band++) {
+            int numRows = Math.min(8, height - band * 8);
+            int planeOffset = band * width;
+            int pixelOffset = band * 8 * width;
+
+            for (int x = 0; x < width; x++) {
+                long indices = (BIT_SPREAD[highPlane[planeOffset + x] & 0xFF] << 1)
+                        | BIT_SPREAD[lowPlane[planeOffset + x] & 0xFF];
+                if (alphaPlane != null) {
+                    indices |= BIT_SPREAD[alphaPlane[planeOffset + x] & 0xFF] << 2;
                 }
 
-                if (abortRequested()) {
-                    processReadAborted();
-                    break;
+                int pos = pixelOffset + x;
+                for (int row = 0; row < numRows; row++) {
+                    pixels[pos] = GRAY_PALETTE[(int) (indices >>> (row * 8)) & 7];
+                    pos += width;
                 }
             }
-
-            raster.setDataElements(0, 0, destRegion.width, destRegion.height, resultPixelData);
         }
+    }
 
-        return destination;
+    private static void decodeRgb332(byte[] rgbPlane, byte[] alphaPlane,
+                                     int[] pixels, int width, int height, int fromBand, int toBand) {
+        for (int band = fromBand; band < toBand; band++) {
+            int numRows = Math.min(8, height - band * 8);
+            int pixelOffset = band * 8 * width;
+            int pixelEnd = pixelOffset + numRows * width;
+
+            for (int pos = pixelOffset; pos < pixelEnd; pos++) {
+                pixels[pos] = RGB332_PALETTE[rgbPlane[pos] & 0xFF];
+            }
+
+            if (alphaPlane == null) continue;
+
+            int planeOffset = band * width;
+            for (int x = 0; x < width; x++) {
+                int transparent = alphaPlane[planeOffset + x] & 0xFF;
+                if (transparent == 0) continue;
+
+                for (int row = 0; row < numRows; row++) {
+                    if ((transparent & (1 << row)) != 0) {
+                        pixels[pixelOffset + row * width + x] = 0;
+                    }
+                }
+            }
+        }
     }
 }
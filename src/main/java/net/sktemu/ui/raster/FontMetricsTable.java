@@ -0,0 +1,120 @@
+package net.sktemu.ui.raster;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Advance widths and vertical metrics of one AWT font, looked up without going through Java2D.
+ * <p>
+ * ASCII widths are measured up front, the Hangul blocks on first use of a character in them.
+ * Everything else is asked from the AWT metrics.
+ */
+public class FontMetricsTable {
+    private static final int HANGUL_JAMO = 0x1100;
+    private static final int HANGUL_JAMO_END = 0x1200;
+    private static final int HANGUL_COMPATIBILITY_JAMO = 0x3130;
+    private static final int HANGUL_COMPATIBILITY_JAMO_END = 0x3190;
+    private static final int HANGUL_SYLLABLES = 0xAC00;
+    private static final int HANGUL_SYLLABLES_END = 0xD7A4;
+
+    private final FontMetrics fontMetrics;
+
+    private final int ascent;
+    private final int descent;
+    private final int height;
+
+    private final short[] asciiWidths;
+
+    // measured on first use, a racing thread measures the same widths again
+    private volatile short[] jamoWidths;
+    private volatile short[] compatibilityJamoWidths;
+    private volatile short[] syllableWidths;
+
+    public FontMetricsTable(Font font) {
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scratch.createGraphics();
+        try {
+            fontMetrics = g.getFontMetrics(font);
+        } finally {
+            g.dispose();
+        }
+
+        ascent = fontMetrics.getAscent();
+        descent = fontMetrics.getDescent();
+        height = fontMetrics.getHeight();
+        asciiWidths = measure(0, 0x80);
+    }
+
+    private short[] measure(int start, int end) {
+        short[] widths = new short[end - start];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = (short) fontMetrics.charWidth((char) (start + i));
+        }
+        return widths;
+    }
+
+    public FontMetrics getFontMetrics() {
+        return fontMetrics;
+    }
+
+    public int getAscent() {
+        return ascent;
+    }
+
+    public int getDescent() {
+        return descent;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int charWidth(char ch) {
+        if (ch < 0x80) {
+            return asciiWidths[ch];
+        }
+
+        if (ch >= HANGUL_SYLLABLES && ch < HANGUL_SYLLABLES_END) {
+            short[] widths = syllableWidths;
+            if (widths == null) {
+                widths = measure(HANGUL_SYLLABLES, HANGUL_SYLLABLES_END);
+                syllableWidths = widths;
+            }
+            return widths[ch - HANGUL_SYLLABLES];
+        }
+        if (ch >= HANGUL_JAMO && ch < HANGUL_JAMO_END) {
+            short[] widths = jamoWidths;
+            if (widths == null) {
+                widths = measure(HANGUL_JAMO, HANGUL_JAMO_END);
+                jamoWidths = widths;
+            }
+            return widths[ch - HANGUL_JAMO];
+        }
+        if (ch >= HANGUL_COMPATIBILITY_JAMO && ch < HANGUL_COMPATIBILITY_JAMO_END) {
+            short[] widths = compatibilityJamoWidths;
+            if (widths == null) {
+                widths = measure(HANGUL_COMPATIBILITY_JAMO, HANGUL_COMPATIBILITY_JAMO_END);
+                compatibilityJamoWidths = widths;
+            }
+            return widths[ch - HANGUL_COMPATIBILITY_JAMO];
+        }
+
+        return fontMetrics.charWidth(ch);
+    }
+
+    public int charsWidth(CharSequence text, int offset, int length) {
+        int width = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            width += charWidth(text.charAt(i));
+        }
+        return width;
+    }
+
+    public int charsWidth(char[] text, int offset, int length) {
+        int width = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            width += charWidth(text[i]);
+        }
+        return width;
+    }
+}
@@ -0,0 +1,104 @@
+package net.sktemu.ui.raster;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coverage masks of the glyphs of one AWT font, rasterized once on first use.
+ * <p>
+ * Glyphs are kept in pages of 256 characters, so that large blocks such as the Hangul syllables
+ * only cost memory for the characters a game actually draws.
+ */
+public class GlyphAtlas {
+    private static final ConcurrentHashMap<Font, GlyphAtlas> atlases = new ConcurrentHashMap<>();
+
+    // the same rendering Java2D uses for text on a BufferedImage by default: no antialiasing, integer metrics
+    private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, false, false);
+
+    private final Font font;
+    private final FontMetrics fontMetrics;
+
+    private final Glyph[][] pages = new Glyph[256][];
+
+    public static class Glyph {
+        /** Horizontal distance to the next glyph. */
+        public final int advance;
+        /** Position of the mask relative to the pen position on the baseline. */
+        public final int originX, originY;
+        public final int width, height;
+        /** Coverage per pixel, 0 to 255, row by row. */
+        public final byte[] mask;
+
+        private Glyph(int advance, int originX, int originY, int width, int height, byte[] mask) {
+            this.advance = advance;
+            this.originX = originX;
+            this.originY = originY;
+            this.width = width;
+            this.height = height;
+            this.mask = mask;
+        }
+    }
+
+    private GlyphAtlas(Font font) {
+        this.font = font;
+
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scratch.createGraphics();
+        try {
+            this.fontMetrics = g.getFontMetrics(font);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    public static GlyphAtlas forFont(Font font) {
+        return atlases.computeIfAbsent(font, GlyphAtlas::new);
+    }
+
+    public Glyph getGlyph(char ch) {
+        Glyph[] page = pages[ch >>> 8];
+        if (page == null) {
+            synchronized (pages) {
+                page = pages[ch >>> 8];
+                if (page == null) {
+                    page = new Glyph[256];
+                    pages[ch >>> 8] = page;
+                }
+            }
+        }
+
+        // racing threads may both rasterize a glyph, they come up with the same result
+        Glyph glyph = page[ch & 0xFF];
+        if (glyph == null) {
+            glyph = rasterize(ch);
+            page[ch & 0xFF] = glyph;
+        }
+        return glyph;
+    }
+
+    private Glyph rasterize(char ch) {
+        int advance = fontMetrics.charWidth(ch);
+
+        GlyphVector glyphVector = font.createGlyphVector(RENDER_CONTEXT, new char[]{ch});
+        Rectangle bounds = glyphVector.getPixelBounds(RENDER_CONTEXT, 0, 0);
+        if (bounds.isEmpty()) {
+            return new Glyph(advance, 0, 0, 0, 0, new byte[0]);
+        }
+
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.drawGlyphVector(glyphVector, -bounds.x, -bounds.y);
+        } finally {
+            g.dispose();
+        }
+
+        byte[] mask = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        return new Glyph(advance, bounds.x, bounds.y, bounds.width, bounds.height, mask);
+    }
+}
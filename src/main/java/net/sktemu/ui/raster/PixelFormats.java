@@ -0,0 +1,71 @@
+package net.sktemu.ui.raster;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Conversion of images into the two formats the rasterizer blits quickly:
+ * TYPE_INT_RGB for opaque images and TYPE_INT_ARGB_PRE for everything else.
+ */
+public abstract class PixelFormats {
+    private PixelFormats() {}
+
+    public static boolean isNormalized(BufferedImage image) {
+        int type = image.getType();
+        return (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB_PRE)
+                && SoftRasterizer.forImage(image) != null;
+    }
+
+    /**
+     * @return the image itself if it's already in one of the normalized formats, a converted copy otherwise
+     */
+    public static BufferedImage normalize(BufferedImage image) {
+        if (isNormalized(image)) {
+            return image;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        return fromArgb(image.getRGB(0, 0, width, height, null, 0, width), width, height);
+    }
+
+    /**
+     * Builds a normalized image from non-premultiplied ARGB pixels. The array may be taken over by the image.
+     */
+    public static BufferedImage fromArgb(int[] argb, int width, int height) {
+        boolean opaque = true;
+        for (int i = 0, n = width * height; i < n; i++) {
+            if ((argb[i] >>> 24) != 0xFF) {
+                opaque = false;
+                break;
+            }
+        }
+
+        BufferedImage result = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        int[] pixels = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+
+        if (opaque) {
+            System.arraycopy(argb, 0, pixels, 0, width * height);
+        } else {
+            for (int i = 0, n = width * height; i < n; i++) {
+                pixels[i] = premultiply(argb[i]);
+            }
+        }
+        return result;
+    }
+
+    public static int premultiply(int argb) {
+        int alpha = argb >>> 24;
+        if (alpha == 0xFF) return argb;
+        if (alpha == 0) return 0;
+
+        int red = ((argb >> 16) & 0xFF) * alpha + 128;
+        int green = ((argb >> 8) & 0xFF) * alpha + 128;
+        int blue = (argb & 0xFF) * alpha + 128;
+        return (alpha << 24)
+                | (((red + (red >> 8)) >> 8) << 16)
+                | (((green + (green >> 8)) >> 8) << 8)
+                | ((blue + (blue >> 8)) >> 8);
+    }
+}
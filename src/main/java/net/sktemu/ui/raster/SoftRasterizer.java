@@ -0,0 +1,354 @@
+package net.sktemu.ui.raster;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Draws primitives straight into the pixel array of an int-packed image.
+ * <p>
+ * All coordinates are in device space, the clip is given as an inclusive-exclusive rectangle
+ * which must already lie within the image bounds.
+ */
+public class SoftRasterizer {
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private final boolean opaque;
+
+    private SoftRasterizer(int[] pixels, int width, int height, boolean opaque) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.opaque = opaque;
+    }
+
+    /**
+     * @return a rasterizer for the image, or null if its pixel layout isn't supported
+     */
+    public static SoftRasterizer forImage(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE) {
+            return null;
+        }
+        if (!(image.getRaster().getDataBuffer() instanceof DataBufferInt)
+                || !(image.getSampleModel() instanceof SinglePixelPackedSampleModel)
+                || image.getRaster().getParent() != null) {
+            return null;
+        }
+
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) image.getSampleModel();
+        DataBufferInt dataBuffer = (DataBufferInt) image.getRaster().getDataBuffer();
+        if (sampleModel.getScanlineStride() != image.getWidth() || dataBuffer.getOffset() != 0) {
+            return null;
+        }
+
+        return new SoftRasterizer(dataBuffer.getData(), image.getWidth(), image.getHeight(),
+                type == BufferedImage.TYPE_INT_RGB);
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return whether the pixels have no alpha channel (TYPE_INT_RGB)
+     */
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    /**
+     * Draws a region of another image onto this opaque one, premultiplied source pixels are blended
+     * with SrcOver and opaque sources are copied row by row.
+     * The region must lie within the source.
+     */
+    public void drawImage(SoftRasterizer source, int sx, int sy, int w, int h, int dx, int dy,
+                          int clipX1, int clipY1, int clipX2, int clipY2) {
+        int x1 = Math.max(dx, clipX1);
+        int y1 = Math.max(dy, clipY1);
+        int x2 = Math.min(dx + w, clipX2);
+        int y2 = Math.min(dy + h, clipY2);
+        if (x1 >= x2 || y1 >= y2) return;
+
+        int[] src = source.pixels;
+        int srcStride = source.width;
+        int rowWidth = x2 - x1;
+
+        // drawing an image onto itself, go bottom-up when moving down so that no row is overwritten before it's read
+        boolean bottomUp = src == pixels && dy > sy;
+
+        for (int i = 0; i < y2 - y1; i++) {
+            int y = bottomUp ? y2 - 1 - i : y1 + i;
+            int srcPos = (sy + y - dy) * srcStride + sx + x1 - dx;
+            int dstPos = y * width + x1;
+
+            if (source.opaque) {
+                System.arraycopy(src, srcPos, pixels, dstPos, rowWidth);
+                continue;
+            }
+
+            for (int end = dstPos + rowWidth; dstPos < end; dstPos++, srcPos++) {
+                int pixel = src[srcPos];
+                int alpha = pixel >>> 24;
+                if (alpha == 0xFF) {
+                    pixels[dstPos] = pixel;
+                } else if (alpha != 0) {
+                    pixels[dstPos] = blendPremultiplied(pixel, pixels[dstPos], 0xFF - alpha);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the pixels covered by an 8-bit coverage mask with a color, blending partially covered ones.
+     */
+    public void drawMask(byte[] mask, int maskWidth, int maskHeight, int x, int y, int argb,
+                         int clipX1, int clipY1, int clipX2, int clipY2) {
+        int x1 = Math.max(x, clipX1);
+        int y1 = Math.max(y, clipY1);
+        int x2 = Math.min(x + maskWidth, clipX2);
+        int y2 = Math.min(y + maskHeight, clipY2);
+        if (x1 >= x2 || y1 >= y2) return;
+
+        for (int py = y1; py < y2; py++) {
+            int maskPos = (py - y) * maskWidth + x1 - x;
+            int dstPos = py * width + x1;
+
+            for (int end = dstPos + x2 - x1; dstPos < end; dstPos++, maskPos++) {
+                int coverage = mask[maskPos] & 0xFF;
+                if (coverage == 0xFF) {
+                    pixels[dstPos] = argb;
+                } else if (coverage != 0) {
+                    pixels[dstPos] = blendPremultiplied(
+                            PixelFormats.premultiply((coverage << 24) | (argb & 0xFFFFFF)),
+                            pixels[dstPos], 0xFF - coverage);
+                }
+            }
+        }
+    }
+
+    private static int blendPremultiplied(int src, int dst, int inverseAlpha) {
+        int red = ((dst >> 16) & 0xFF) * inverseAlpha + 128;
+        int green = ((dst >> 8) & 0xFF) * inverseAlpha + 128;
+        int blue = (dst & 0xFF) * inverseAlpha + 128;
+        return 0xFF000000
+                | (((src >> 16) & 0xFF) + ((red + (red >> 8)) >> 8)) << 16
+                | (((src >> 8) & 0xFF) + ((green + (green >> 8)) >> 8)) << 8
+                | ((src & 0xFF) + ((blue + (blue >> 8)) >> 8));
+    }
+
+    public void fillRect(int x, int y, int w, int h, int argb, int clipX1, int clipY1, int clipX2, int clipY2) {
+        int x1 = Math.max(x, clipX1);
+        int y1 = Math.max(y, clipY1);
+        int x2 = (int) Math.min((long) x + w, clipX2);
+        int y2 = (int) Math.min((long) y + h, clipY2);
+        if (x1 >= x2 || y1 >= y2) return;
+
+        for (int py = y1; py < y2; py++) {
+            int offset = py * width;
+            Arrays.fill(pixels, offset + x1, offset + x2, argb);
+        }
+    }
+
+    /**
+     * Draws a Bresenham line. Only the steps within the clip are walked, so lines with far-off endpoints are as
+     * cheap as short ones.
+     */
+    public void drawLine(int x1, int y1, int x2, int y2, int argb, int clipX1, int clipY1, int clipX2, int clipY2) {
+        if (y1 == y2) {
+            if (y1 < clipY1 || y1 >= clipY2) return;
+            int left = Math.max(Math.min(x1, x2), clipX1);
+            int right = Math.min(Math.max(x1, x2), clipX2 - 1);
+            if (left <= right) {
+                Arrays.fill(pixels, y1 * width + left, y1 * width + right + 1, argb);
+            }
+            return;
+        }
+        if (x1 == x2) {
+            if (x1 < clipX1 || x1 >= clipX2) return;
+            int top = Math.max(Math.min(y1, y2), clipY1);
+            int bottom = Math.min(Math.max(y1, y2), clipY2 - 1);
+            for (int y = top; y <= bottom; y++) {
+                pixels[y * width + x1] = argb;
+            }
+            return;
+        }
+
+        if (Math.max(x1, x2) < clipX1 || Math.min(x1, x2) >= clipX2
+                || Math.max(y1, y2) < clipY1 || Math.min(y1, y2) >= clipY2) {
+            return;
+        }
+
+        // longs, the distance between two ints doesn't fit into one
+        long dx = Math.abs((long) x2 - x1);
+        long dy = Math.abs((long) y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+
+        // every step moves along the major axis, so the clip bounds the steps to walk
+        boolean xMajor = dx >= dy;
+        long major = xMajor ? dx : dy;
+        long minor = xMajor ? dy : dx;
+        long first;
+        long last;
+        if (xMajor) {
+            first = sx > 0 ? (long) clipX1 - x1 : (long) x1 - (clipX2 - 1);
+            last = sx > 0 ? (long) (clipX2 - 1) - x1 : (long) x1 - clipX1;
+        } else {
+            first = sy > 0 ? (long) clipY1 - y1 : (long) y1 - (clipY2 - 1);
+            last = sy > 0 ? (long) (clipY2 - 1) - y1 : (long) y1 - clipY1;
+        }
+        first = Math.max(first, 0);
+        last = Math.min(last, major);
+        if (first > last) return;
+
+        // the state Bresenham would be in after the skipped steps
+        long minorSteps = countMinorSteps(minor, major, first);
+        long xSteps = xMajor ? first : minorSteps;
+        long ySteps = xMajor ? minorSteps : first;
+        // the exact value fits even where the products overflow, and wrapping arithmetic gets there
+        long error = dx * (ySteps + 1) - dy * (xSteps + 1);
+
+        long x = x1 + sx * xSteps;
+        long y = y1 + sy * ySteps;
+        for (long step = first; ; step++) {
+            if (x >= clipX1 && x < clipX2 && y >= clipY1 && y < clipY2) {
+                pixels[(int) y * width + (int) x] = argb;
+            }
+            if (step == last) break;
+
+            long error2 = error * 2;
+            if (error2 >= -dy) {
+                error -= dy;
+                x += sx;
+            }
+            if (error2 <= dx) {
+                error += dx;
+                y += sy;
+            }
+        }
+    }
+
+    /**
+     * @return how many times the minor coordinate of a Bresenham line has moved after the given number of steps
+     */
+    private static long countMinorSteps(long minor, long major, long steps) {
+        if (minor < (1L << 30) && steps < (1L << 31)) {
+            return (2 * minor * steps + major) / (2 * major);
+        }
+        // only for lines across most of the int range
+        return BigInteger.valueOf(minor).multiply(BigInteger.valueOf(2 * steps))
+                .add(BigInteger.valueOf(major))
+                .divide(BigInteger.valueOf(2 * major))
+                .longValue();
+    }
+
+    /**
+     * Outlines the rectangle, covering width + 1 by height + 1 pixels like MIDP and Java2D do.
+     */
+    public void drawRect(int x, int y, int w, int h, int argb, int clipX1, int clipY1, int clipX2, int clipY2) {
+        if (w < 0 || h < 0) return;
+
+        if (w == 0 || h == 0) {
+            fillRect(x, y, w + 1, h + 1, argb, clipX1, clipY1, clipX2, clipY2);
+            return;
+        }
+
+        fillRect(x, y, w + 1, 1, argb, clipX1, clipY1, clipX2, clipY2);
+        fillRect(x, y + h, w + 1, 1, argb, clipX1, clipY1, clipX2, clipY2);
+        fillRect(x, y + 1, 1, h - 1, argb, clipX1, clipY1, clipX2, clipY2);
+        fillRect(x + w, y + 1, 1, h - 1, argb, clipX1, clipY1, clipX2, clipY2);
+    }
+
+    public void fillEllipse(int x, int y, int w, int h, int argb, int clipX1, int clipY1, int clipX2, int clipY2) {
+        if (w <= 0 || h <= 0) return;
+
+        int[] spans = computeEllipseSpans(w, h);
+        for (int row = 0; row < h; row++) {
+            int left = spans[row * 2];
+            int right = spans[row * 2 + 1];
+            if (left <= right) {
+                fillRect(x + left, y + row, right - left + 1, 1, argb, clipX1, clipY1, clipX2, clipY2);
+            }
+        }
+    }
+
+    /**
+     * Outlines the ellipse inscribed into a width + 1 by height + 1 pixel box.
+     */
+    public void drawEllipse(int x, int y, int w, int h, int argb, int clipX1, int clipY1, int clipX2, int clipY2) {
+        if (w < 0 || h < 0) return;
+
+        int boxWidth = w + 1;
+        int boxHeight = h + 1;
+        int[] spans = computeEllipseSpans(boxWidth, boxHeight);
+
+        for (int row = 0; row < boxHeight; row++) {
+            int left = spans[row * 2];
+            int right = spans[row * 2 + 1];
+            if (left > right) continue;
+
+            // extend each edge towards the edges of the neighbouring rows, so that the outline has no gaps
+            int innerLeft;
+            int innerRight;
+            if (row > 0 && row < boxHeight - 1) {
+                int neighbourLeft = Math.max(spans[(row - 1) * 2], spans[(row + 1) * 2]);
+                int neighbourRight = Math.min(spans[(row - 1) * 2 + 1], spans[(row + 1) * 2 + 1]);
+                innerLeft = Math.max(left, neighbourLeft - 1);
+                innerRight = Math.min(right, neighbourRight + 1);
+            } else {
+                innerLeft = right;
+                innerRight = left;
+            }
+
+            if (innerLeft >= innerRight) {
+                fillRect(x + left, y + row, right - left + 1, 1, argb, clipX1, clipY1, clipX2, clipY2);
+            } else {
+                fillRect(x + left, y + row, innerLeft - left + 1, 1, argb, clipX1, clipY1, clipX2, clipY2);
+                fillRect(x + innerRight, y + row, right - innerRight + 1, 1, argb, clipX1, clipY1, clipX2, clipY2);
+            }
+        }
+    }
+
+    /**
+     * @return the inclusive left and right pixel of each row of an ellipse filling a w by h box,
+     * left is greater than right for empty rows
+     */
+    private static int[] computeEllipseSpans(int w, int h) {
+        int[] spans = new int[h * 2];
+        double rx = w / 2.0;
+        double ry = h / 2.0;
+
+        for (int row = 0; row < h; row++) {
+            double dy = (row + 0.5 - ry) / ry;
+            double extent = 1.0 - dy * dy;
+            if (extent < 0) {
+                spans[row * 2] = 1;
+                spans[row * 2 + 1] = 0;
+                continue;
+            }
+
+            double half = rx * Math.sqrt(extent);
+            int left = (int) Math.round(rx - half);
+            int right = (int) Math.round(rx + half) - 1;
+            if (left > right) {
+                // keep at least the middle pixel, so that thin ellipses don't vanish
+                left = right = (int) rx - (w % 2 == 0 && rx > 0 ? 1 : 0);
+            }
+            spans[row * 2] = left;
+            spans[row * 2 + 1] = right;
+        }
+        return spans;
+    }
+}
@@ -0,0 +1,204 @@
+package net.sktemu.ui.raster;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The eight MIDP 2 sprite transforms, with a cache of transformed regions of immutable images.
+ * <p>
+ * Cached regions are held per source image through weak keys, so they go away with their source,
+ * and each of them through a soft reference, so that they give way under memory pressure.
+ * Entries of cleared regions are dropped on the next cache access.
+ */
+public abstract class SpriteTransforms {
+    public static final int TRANS_NONE = 0;
+    public static final int TRANS_MIRROR_ROT180 = 1;
+    public static final int TRANS_MIRROR = 2;
+    public static final int TRANS_ROT180 = 3;
+    public static final int TRANS_MIRROR_ROT270 = 4;
+    public static final int TRANS_ROT90 = 5;
+    public static final int TRANS_ROT270 = 6;
+    public static final int TRANS_MIRROR_ROT90 = 7;
+
+    private static final Map<BufferedImage, Map<RegionKey, RegionReference>> cache = new WeakHashMap<>();
+    private static final ReferenceQueue<BufferedImage> clearedRegions = new ReferenceQueue<>();
+
+    private static long hits = 0;
+    private static long misses = 0;
+
+    private SpriteTransforms() {}
+
+    /**
+     * @return whether the transform swaps the width and height of the region
+     */
+    public static boolean swapsAxes(int transform) {
+        return (transform & 4) != 0;
+    }
+
+    /**
+     * Returns the transformed region of an image that is never modified afterwards, from the cache if possible.
+     * The result is shared and must not be modified either.
+     */
+    public static BufferedImage transformImmutable(BufferedImage source, int x, int y, int width, int height, int transform) {
+        RegionKey key = new RegionKey(x, y, width, height, transform);
+
+        synchronized (cache) {
+            expungeClearedRegions();
+
+            Map<RegionKey, RegionReference> regions = cache.get(source);
+            if (regions != null) {
+                RegionReference reference = regions.get(key);
+                BufferedImage cached = reference != null ? reference.get() : null;
+                if (cached != null) {
+                    hits++;
+                    return cached;
+                }
+            }
+            misses++;
+        }
+
+        BufferedImage result = transform(source, x, y, width, height, transform);
+
+        synchronized (cache) {
+            Map<RegionKey, RegionReference> regions = cache.computeIfAbsent(source, k -> new HashMap<>());
+            regions.put(key, new RegionReference(result, regions, key));
+        }
+
+        return result;
+    }
+
+    // call with the cache lock held
+    private static void expungeClearedRegions() {
+        Reference<? extends BufferedImage> reference;
+        while ((reference = clearedRegions.poll()) != null) {
+            RegionReference region = (RegionReference) reference;
+            // the entry may already hold a newer reference for the same region
+            region.regions.remove(region.key, region);
+        }
+    }
+
+    /**
+     * @return a new image holding the transformed region, in one of the {@link PixelFormats} formats
+     */
+    public static BufferedImage transform(BufferedImage source, int x, int y, int width, int height, int transform) {
+        if (transform < 0 || transform > 7) {
+            throw new IllegalArgumentException("Invalid transform " + transform);
+        }
+
+        int[] src = source.getRGB(x, y, width, height, null, 0, width);
+
+        boolean swap = swapsAxes(transform);
+        int dstWidth = swap ? height : width;
+        int dstHeight = swap ? width : height;
+        int[] dst = new int[width * height];
+
+        // position of the source top-left pixel in the destination, and the steps to take per source column and row
+        int origin;
+        int columnStep;
+        int rowStep;
+        switch (transform) {
+            case TRANS_MIRROR:
+                origin = width - 1;
+                columnStep = -1;
+                rowStep = dstWidth;
+                break;
+            case TRANS_MIRROR_ROT180:
+                origin = (height - 1) * dstWidth;
+                columnStep = 1;
+                rowStep = -dstWidth;
+                break;
+            case TRANS_ROT180:
+                origin = (height - 1) * dstWidth + width - 1;
+                columnStep = -1;
+                rowStep = -dstWidth;
+                break;
+            case TRANS_ROT90:
+                origin = height - 1;
+                columnStep = dstWidth;
+                rowStep = -1;
+                break;
+            case TRANS_ROT270:
+                origin = (width - 1) * dstWidth;
+                columnStep = -dstWidth;
+                rowStep = 1;
+                break;
+            case TRANS_MIRROR_ROT90:
+                origin = (width - 1) * dstWidth + height - 1;
+                columnStep = -dstWidth;
+                rowStep = -1;
+                break;
+            case TRANS_MIRROR_ROT270:
+                origin = 0;
+                columnStep = dstWidth;
+                rowStep = 1;
+                break;
+            default:
+                origin = 0;
+                columnStep = 1;
+                rowStep = dstWidth;
+                break;
+        }
+
+        int srcPos = 0;
+        for (int row = 0; row < height; row++) {
+            int dstPos = origin + row * rowStep;
+            for (int column = 0; column < width; column++) {
+                dst[dstPos] = src[srcPos++];
+                dstPos += columnStep;
+            }
+        }
+
+        return PixelFormats.fromArgb(dst, dstWidth, dstHeight);
+    }
+
+    public static String getCacheStatsString() {
+        synchronized (cache) {
+            long requests = hits + misses;
+            return String.format("%d source images, %d hits, %d misses (%.1f%% hit rate)",
+                    cache.size(), hits, misses, requests == 0 ? 0.0 : hits * 100.0 / requests);
+        }
+    }
+
+    private static final class RegionReference extends SoftReference<BufferedImage> {
+        // not the source image, that would keep the weak key of the cache alive
+        private final Map<RegionKey, RegionReference> regions;
+        private final RegionKey key;
+
+        private RegionReference(BufferedImage region, Map<RegionKey, RegionReference> regions, RegionKey key) {
+            super(region, clearedRegions);
+            this.regions = regions;
+            this.key = key;
+        }
+    }
+
+    private static final class RegionKey {
+        private final int x, y, width, height, transform;
+
+        private RegionKey(int x, int y, int width, int height, int transform) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.transform = transform;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RegionKey)) return false;
+            RegionKey other = (RegionKey) o;
+            return x == other.x && y == other.y && width == other.width && height == other.height
+                    && transform == other.transform;
+        }
+
+        @Override
+        public int hashCode() {
+            return (((x * 31 + y) * 31 + width) * 31 + height) * 8 + transform;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package net.sktemu.ui.raster;
+
+/**
+ * Coverage mask of a whole rendered string, so that text drawn again and again costs a single mask blit.
+ * <p>
+ * Masks don't depend on the color, one cached mask serves the string in every color.
+ */
+public class TextMask {
+    /** Position of the mask relative to the pen position on the baseline where the string starts. */
+    public final int originX, originY;
+    public final int width, height;
+    /** Coverage per pixel, 0 to 255, row by row. */
+    public final byte[] mask;
+
+    private TextMask(int originX, int originY, int width, int height, byte[] mask) {
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        this.mask = mask;
+    }
+
+    public static TextMask render(GlyphAtlas atlas, CharSequence text, int offset, int length) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+        int penX = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            GlyphAtlas.Glyph glyph = atlas.getGlyph(text.charAt(i));
+            if (glyph.width > 0) {
+                minX = Math.min(minX, penX + glyph.originX);
+                minY = Math.min(minY, glyph.originY);
+                maxX = Math.max(maxX, penX + glyph.originX + glyph.width);
+                maxY = Math.max(maxY, glyph.originY + glyph.height);
+            }
+            penX += glyph.advance;
+        }
+
+        if (minX > maxX) {
+            return new TextMask(0, 0, 0, 0, new byte[0]);
+        }
+
+        int width = maxX - minX;
+        int height = maxY - minY;
+        byte[] mask = new byte[width * height];
+
+        penX = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            GlyphAtlas.Glyph glyph = atlas.getGlyph(text.charAt(i));
+            int left = penX + glyph.originX - minX;
+            int top = glyph.originY - minY;
+            for (int row = 0; row < glyph.height; row++) {
+                int srcPos = row * glyph.width;
+                int dstPos = (top + row) * width + left;
+                for (int column = 0; column < glyph.width; column++, srcPos++, dstPos++) {
+                    // glyphs are rendered without antialiasing, overlapping coverage is either full or none
+                    if ((glyph.mask[srcPos] & 0xFF) > (mask[dstPos] & 0xFF)) {
+                        mask[dstPos] = glyph.mask[srcPos];
+                    }
+                }
+            }
+            penX += glyph.advance;
+        }
+
+        return new TextMask(minX, minY, width, height, mask);
+    }
+
+    /**
+     * Cache key of a string drawn with a glyph atlas. Lookups can use a key over a part of a longer text,
+     * {@link #copy()} makes a key that doesn't hold on to the text.
+     */
+    public static final class Key {
+        private final GlyphAtlas atlas;
+        private final CharSequence text;
+        private final int offset, length;
+        private final int hash;
+
+        public Key(GlyphAtlas atlas, CharSequence text, int offset, int length) {
+            this.atlas = atlas;
+            this.text = text;
+            this.offset = offset;
+            this.length = length;
+
+            int h = System.identityHashCode(atlas);
+            for (int i = offset, end = offset + length; i < end; i++) {
+                h = h * 31 + text.charAt(i);
+            }
+            this.hash = h;
+        }
+
+        public Key copy() {
+            return new Key(atlas, text.subSequence(offset, offset + length).toString(), 0, length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            if (atlas != other.atlas || length != other.length || hash != other.hash) return false;
+            for (int i = 0; i < length; i++) {
+                if (text.charAt(offset + i) != other.text.charAt(other.offset + i)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
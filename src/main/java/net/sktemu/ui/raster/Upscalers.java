@@ -0,0 +1,86 @@
+package net.sktemu.ui.raster;
+
+/**
+ * Scaling kernels for presenting frames: nearest neighbour through precomputed source row and column maps,
+ * and the Scale2x (EPX) pixel art filter. All of them work on an area, so that only damage is rescaled.
+ */
+public abstract class Upscalers {
+    private Upscalers() {}
+
+    /**
+     * @return for each destination coordinate, the source coordinate it samples
+     */
+    public static int[] buildMap(int srcSize, int dstSize) {
+        int[] map = new int[dstSize];
+        for (int i = 0; i < dstSize; i++) {
+            map[i] = (int) ((long) i * srcSize / dstSize);
+        }
+        return map;
+    }
+
+    /**
+     * @return the first destination coordinate that samples a source coordinate at or after the given one
+     */
+    public static int mapToDestination(int srcCoord, int srcSize, int dstSize) {
+        return (int) (((long) srcCoord * dstSize + srcSize - 1) / srcSize);
+    }
+
+    /**
+     * Fills the destination area, x2/y2 exclusive, from the source through the maps.
+     */
+    public static void scaleNearest(int[] src, int srcStride, int[] dst, int dstStride,
+                                    int[] columnMap, int[] rowMap, int x1, int y1, int x2, int y2) {
+        int width = x2 - x1;
+        for (int y = y1; y < y2; y++) {
+            int dstPos = y * dstStride + x1;
+
+            // upscaled rows repeat, copy the one already done
+            if (y > y1 && rowMap[y] == rowMap[y - 1]) {
+                System.arraycopy(dst, dstPos - dstStride, dst, dstPos, width);
+                continue;
+            }
+
+            int srcRow = rowMap[y] * srcStride;
+            for (int x = x1; x < x2; x++) {
+                dst[dstPos++] = src[srcRow + columnMap[x]];
+            }
+        }
+    }
+
+    /**
+     * Doubles the source area, x2/y2 exclusive, into a destination twice as wide and high.
+     * Pixels outside the source count as copies of the nearest edge pixel.
+     */
+    public static void scale2x(int[] src, int width, int height, int[] dst, int x1, int y1, int x2, int y2) {
+        int dstStride = width * 2;
+        for (int y = y1; y < y2; y++) {
+            int row = y * width;
+            int rowAbove = y > 0 ? row - width : row;
+            int rowBelow = y < height - 1 ? row + width : row;
+            int dstPos = y * 2 * dstStride + x1 * 2;
+
+            for (int x = x1; x < x2; x++, dstPos += 2) {
+                int left = x > 0 ? x - 1 : x;
+                int right = x < width - 1 ? x + 1 : x;
+
+                int p = src[row + x];
+                int a = src[rowAbove + x];
+                int b = src[row + right];
+                int c = src[row + left];
+                int d = src[rowBelow + x];
+
+                if (a != d && c != b) {
+                    dst[dstPos] = c == a ? a : p;
+                    dst[dstPos + 1] = a == b ? b : p;
+                    dst[dstPos + dstStride] = c == d ? c : p;
+                    dst[dstPos + dstStride + 1] = b == d ? d : p;
+                } else {
+                    dst[dstPos] = p;
+                    dst[dstPos + 1] = p;
+                    dst[dstPos + dstStride] = p;
+                    dst[dstPos + dstStride + 1] = p;
+                }
+            }
+        }
+    }
+}
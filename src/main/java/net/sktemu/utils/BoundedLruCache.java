@@ -0,0 +1,99 @@
+package net.sktemu.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe LRU cache bounded by the total weight of its values rather than their count.
+ */
+public class BoundedLruCache<K, V> {
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final ToLongFunction<V> weigher;
+    private final long budget;
+    private long weight = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public BoundedLruCache(long budget, ToLongFunction<V> weigher) {
+        this.budget = budget;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    public synchronized boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Values heavier than the whole budget are not stored.
+     */
+    public synchronized void put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > budget) {
+            return;
+        }
+
+        V oldValue = map.put(key, value);
+        if (oldValue != null) {
+            weight -= weigher.applyAsLong(oldValue);
+        }
+        weight += valueWeight;
+
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while (weight > budget && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            weight -= weigher.applyAsLong(eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized String getStatsString() {
+        long requests = hits + misses;
+        return String.format("%d entries, %d/%d weight, %d hits, %d misses (%.1f%% hit rate), %d evictions",
+                map.size(), weight, budget, hits, misses,
+                requests == 0 ? 0.0 : hits * 100.0 / requests, evictions);
+    }
+}
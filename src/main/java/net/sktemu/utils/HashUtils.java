@@ -0,0 +1,42 @@
+package net.sktemu.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public abstract class HashUtils {
+    private HashUtils() {}
+
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream stream = new FileInputStream(file)) {
+            byte[] buf = new byte[65536];
+            int numRead;
+            while ((numRead = stream.read(buf)) >= 0) {
+                digest.update(buf, 0, numRead);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
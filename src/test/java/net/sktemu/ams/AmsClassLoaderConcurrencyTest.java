@@ -0,0 +1,149 @@
+package net.sktemu.ams;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.*;
+
+public class AmsClassLoaderConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 20;
+
+    // a chain of superclasses, so that loading one class recursively loads the others
+    private static final int SHARED_CLASSES = 24;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void concurrentLoadsFromJarFile() throws Exception {
+        stressTest(false);
+    }
+
+    @Test
+    public void concurrentLoadsFromJarImage() throws Exception {
+        stressTest(true);
+    }
+
+    private void stressTest(boolean jarImage) throws Exception {
+        File jar = temporaryFolder.newFile("guest.jar");
+        writeGuestJar(jar);
+
+        List<String> sharedNames = new ArrayList<>();
+        for (int i = 0; i < SHARED_CLASSES; i++) {
+            sharedNames.add("guest.Shared" + i);
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            TestAppModel appModel = new TestAppModel(temporaryFolder.newFolder(), jar);
+            appModel.getDeviceProfile().setJarImage(jarImage);
+
+            try (AmsClassLoader classLoader = new AmsClassLoader(appModel)) {
+                CyclicBarrier barrier = new CyclicBarrier(THREADS);
+                ConcurrentHashMap<String, Set<Class<?>>> results = new ConcurrentHashMap<>();
+                ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+                List<Thread> threads = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    List<String> names = new ArrayList<>(sharedNames);
+                    names.add("guest.Own" + t);
+                    // the same classes in a different order per thread, the deepest subclass first for some
+                    Collections.shuffle(names, new Random(round * THREADS + t));
+
+                    Thread thread = new Thread(() -> {
+                        try {
+                            barrier.await();
+                            for (String name : names) {
+                                Class<?> clazz = classLoader.loadClass(name);
+                                results.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(clazz);
+                            }
+                        } catch (Throwable e) {
+                            failures.add(e);
+                        }
+                    });
+                    threads.add(thread);
+                    thread.start();
+                }
+
+                for (Thread thread : threads) {
+                    thread.join(30_000);
+                    assertFalse("loader thread hung", thread.isAlive());
+                }
+
+                if (!failures.isEmpty()) {
+                    AssertionError error = new AssertionError(failures.size() + " threads failed to load classes");
+                    for (Throwable failure : failures) {
+                        error.addSuppressed(failure);
+                    }
+                    throw error;
+                }
+
+                assertEquals(SHARED_CLASSES + THREADS, results.size());
+                for (Map.Entry<String, Set<Class<?>>> entry : results.entrySet()) {
+                    assertEquals(entry.getKey() + " resolved to several classes", 1, entry.getValue().size());
+
+                    Class<?> clazz = entry.getValue().iterator().next();
+                    assertEquals(entry.getKey(), clazz.getName());
+                    assertSame(classLoader, clazz.getClassLoader());
+                }
+
+                // the superclass links point at the same instances the threads got
+                for (int i = 1; i < SHARED_CLASSES; i++) {
+                    Class<?> clazz = results.get("guest.Shared" + i).iterator().next();
+                    assertSame(results.get("guest.Shared" + (i - 1)).iterator().next(), clazz.getSuperclass());
+                }
+            }
+        }
+    }
+
+    private static void writeGuestJar(File file) throws IOException {
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < SHARED_CLASSES; i++) {
+                String superName = i == 0 ? "java/lang/Object" : "guest/Shared" + (i - 1);
+                writeClass(jar, "guest/Shared" + i, superName);
+            }
+            for (int t = 0; t < THREADS; t++) {
+                writeClass(jar, "guest/Own" + t, "guest/Shared" + (t % SHARED_CLASSES));
+            }
+        }
+    }
+
+    private static void writeClass(JarOutputStream jar, String name, String superName) throws IOException {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, null);
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        // gives the time pass something to rewrite, so that classes go through the whole pipeline
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "now", "()J", null, null);
+        method.visitCode();
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false);
+        method.visitInsn(Opcodes.LRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+
+        jar.putNextEntry(new JarEntry(name + ".class"));
+        jar.write(writer.toByteArray());
+        jar.closeEntry();
+    }
+}
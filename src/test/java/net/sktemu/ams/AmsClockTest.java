@@ -0,0 +1,185 @@
+package net.sktemu.ams;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+
+public class AmsClockTest {
+    private ThreadGroup guestThreads;
+    private AmsClock clock;
+    private long start;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    private interface GuestCode {
+        void run() throws Exception;
+    }
+
+    @Before
+    public void setUp() {
+        guestThreads = new ThreadGroup("test guest");
+        clock = new AmsClock(AmsClock.Mode.UNTHROTTLED, 1.0, guestThreads);
+        start = clock.currentTimeMillis();
+    }
+
+    private void startGuest(GuestCode code) {
+        threads.add(new Thread(guestThreads, () -> {
+            try {
+                code.run();
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        }));
+    }
+
+    private void joinGuests() throws InterruptedException {
+        // started from a guest thread, like a game starts its threads, so that time can't move before all are up
+        Thread launcher = new Thread(guestThreads, () -> threads.forEach(Thread::start));
+        launcher.start();
+        launcher.join();
+
+        for (Thread thread : threads) {
+            thread.join(10_000);
+            assertFalse("guest thread hung", thread.isAlive());
+        }
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError(failures.size() + " guest threads failed");
+            for (Throwable failure : failures) {
+                error.addSuppressed(failure);
+            }
+            throw error;
+        }
+    }
+
+    private long elapsed() {
+        return clock.currentTimeMillis() - start;
+    }
+
+    @Test
+    public void concurrentSleepsShareTime() throws Exception {
+        long[] wokeAt = new long[2];
+        for (int i = 0; i < 2; i++) {
+            int index = i;
+            startGuest(() -> {
+                clock.sleep(50, 0);
+                wokeAt[index] = elapsed();
+            });
+        }
+        joinGuests();
+
+        assertEquals(50, wokeAt[0]);
+        assertEquals(50, wokeAt[1]);
+        assertEquals(50, elapsed());
+    }
+
+    @Test
+    public void sleepersWakeAtTheirOwnDeadlines() throws Exception {
+        List<Long> shortSleeper = new ArrayList<>();
+        long[] longSleeper = new long[1];
+
+        startGuest(() -> {
+            for (int i = 0; i < 3; i++) {
+                clock.sleep(30, 0);
+                shortSleeper.add(elapsed());
+            }
+        });
+        startGuest(() -> {
+            clock.sleep(100, 0);
+            longSleeper[0] = elapsed();
+        });
+        joinGuests();
+
+        assertEquals(java.util.Arrays.asList(30L, 60L, 90L), shortSleeper);
+        assertEquals(100, longSleeper[0]);
+    }
+
+    @Test
+    public void notifiedWaiterDoesNotAdvanceTime() throws Exception {
+        Object monitor = new Object();
+        long[] waiterReturnedAt = new long[1];
+
+        startGuest(() -> {
+            synchronized (monitor) {
+                clock.timedWait(monitor, 5000);
+                waiterReturnedAt[0] = elapsed();
+            }
+        });
+        startGuest(() -> {
+            clock.sleep(10, 0);
+            synchronized (monitor) {
+                clock.notifyWaiters(monitor, false);
+            }
+        });
+        joinGuests();
+
+        assertEquals(10, waiterReturnedAt[0]);
+        assertEquals(10, elapsed());
+    }
+
+    @Test
+    public void timedWaitExpiresAtItsDeadline() throws Exception {
+        Object monitor = new Object();
+        long[] waiterReturnedAt = new long[1];
+
+        startGuest(() -> {
+            synchronized (monitor) {
+                clock.timedWait(monitor, 200);
+                waiterReturnedAt[0] = elapsed();
+            }
+        });
+        joinGuests();
+
+        assertEquals(200, waiterReturnedAt[0]);
+    }
+
+    @Test
+    public void runningThreadHoldsTimeBack() throws Exception {
+        long[] busyDoneAt = new long[1];
+        long[] sleeperWokeAt = new long[1];
+        long[] sleeperWokeAtReal = new long[1];
+        long[] busyDoneAtReal = new long[1];
+
+        startGuest(() -> {
+            long until = System.nanoTime() + 50_000_000L;
+            while (System.nanoTime() < until) {
+                Thread.yield();
+            }
+            busyDoneAt[0] = elapsed();
+            busyDoneAtReal[0] = System.nanoTime();
+        });
+        startGuest(() -> {
+            clock.sleep(10, 0);
+            sleeperWokeAt[0] = elapsed();
+            sleeperWokeAtReal[0] = System.nanoTime();
+        });
+        joinGuests();
+
+        assertEquals(0, busyDoneAt[0]);
+        assertEquals(10, sleeperWokeAt[0]);
+        assertTrue("time advanced while a guest thread was running", sleeperWokeAtReal[0] >= busyDoneAtReal[0]);
+    }
+
+    @Test
+    public void interruptedSleeperLeavesTheClock() throws Exception {
+        boolean[] interrupted = new boolean[1];
+        startGuest(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                clock.sleep(1000, 0);
+            } catch (InterruptedException e) {
+                interrupted[0] = true;
+            }
+            clock.sleep(5, 0);
+        });
+        joinGuests();
+
+        assertTrue(interrupted[0]);
+        assertEquals(5, elapsed());
+    }
+}
@@ -0,0 +1,20 @@
+package net.sktemu.ams;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AmsGcPolicyTest {
+    @Test
+    public void firstRequestGoesThrough() {
+        AmsGcPolicy policy = new AmsGcPolicy(AmsGcPolicy.Mode.RATE_LIMITED, 60_000);
+
+        policy.requestGc();
+        assertEquals(1, policy.getPerformedCount());
+        assertEquals(0, policy.getSuppressedCount());
+
+        policy.requestGc();
+        assertEquals(1, policy.getPerformedCount());
+        assertEquals(1, policy.getSuppressedCount());
+    }
+}
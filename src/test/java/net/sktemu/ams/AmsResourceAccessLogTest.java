@@ -0,0 +1,54 @@
+package net.sktemu.ams;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class AmsResourceAccessLogTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shortSessionKeepsPreviousEntries() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "resources.log");
+
+        try (AmsResourceAccessLog log = new AmsResourceAccessLog(file)) {
+            for (String path : Arrays.asList("a", "b", "c", "d", "b")) {
+                log.record(path);
+            }
+        }
+
+        // quits at the title screen, after touching one resource early and one new one
+        try (AmsResourceAccessLog log = new AmsResourceAccessLog(file)) {
+            assertEquals(Arrays.asList("a", "b", "c", "d"), log.getPreviousEntries());
+            log.record("c");
+            log.record("e");
+        }
+
+        try (AmsResourceAccessLog log = new AmsResourceAccessLog(file)) {
+            assertEquals(Arrays.asList("c", "e", "a", "b", "d"), log.getPreviousEntries());
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void emptySessionLeavesLogAlone() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "resources.log");
+
+        try (AmsResourceAccessLog log = new AmsResourceAccessLog(file)) {
+            log.record("a");
+        }
+        try (AmsResourceAccessLog log = new AmsResourceAccessLog(file)) {
+            assertEquals(Collections.singletonList("a"), log.getPreviousEntries());
+        }
+        try (AmsResourceAccessLog log = new AmsResourceAccessLog(file)) {
+            assertEquals(Collections.singletonList("a"), log.getPreviousEntries());
+        }
+    }
+}
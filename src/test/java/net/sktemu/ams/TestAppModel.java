@@ -0,0 +1,28 @@
+package net.sktemu.ams;
+
+import net.sktemu.ui.PresentationTarget;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An app model for a bare jar, enough to create a class loader for it.
+ */
+class TestAppModel extends AppModel {
+    private final File jar;
+
+    TestAppModel(File dataDir, File jar) throws IOException {
+        super(dataDir);
+        this.jar = jar;
+    }
+
+    @Override
+    public AmsJarLocation doCacheJar() {
+        return new AmsJarLocation(jar, 0, null);
+    }
+
+    @Override
+    public AppInstance createAppInstance(PresentationTarget presentationTarget) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,134 @@
+package net.sktemu.ams;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TimeMethodPassTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<byte[]> classFiles = new ArrayList<>();
+
+    @Test
+    public void sleepThroughThreadSubclassesIsRewritten() throws Exception {
+        // Thread subclasses calling sleep unqualified, the compiler puts their own name in the reference
+        byte[] worker = addClass("guest/Worker", "java/lang/Thread", false,
+                "guest/Worker", "(J)V", "guest/Worker", "(JI)V", "java/lang/Thread", "(J)V");
+        byte[] subWorker = addClass("guest/SubWorker", "guest/Worker", false,
+                "guest/SubWorker", "(J)V");
+
+        try (AmsClassLoader classLoader = createClassLoader()) {
+            assertEquals(Arrays.asList(
+                    "net/sktemu/ams/AmsClock.guestSleep(J)V",
+                    "net/sktemu/ams/AmsClock.guestSleep(JI)V",
+                    "net/sktemu/ams/AmsClock.guestSleep(J)V"
+            ), getSleepCalls(classLoader, worker));
+            assertEquals(Collections.singletonList(
+                    "net/sktemu/ams/AmsClock.guestSleep(J)V"
+            ), getSleepCalls(classLoader, subWorker));
+        }
+    }
+
+    @Test
+    public void sleepDeclaredByGuestIsLeftAlone() throws Exception {
+        // shadows Thread.sleep, references through it or its subclasses call the guest method
+        byte[] shadowing = addClass("guest/Shadowing", "java/lang/Thread", true,
+                "guest/Shadowing", "(J)V");
+        byte[] subShadowing = addClass("guest/SubShadowing", "guest/Shadowing", false,
+                "guest/SubShadowing", "(J)V", "java/lang/Thread", "(JI)V");
+        byte[] plain = addClass("guest/Plain", "java/lang/Object", true,
+                "guest/Plain", "(J)V");
+
+        try (AmsClassLoader classLoader = createClassLoader()) {
+            assertEquals(Collections.singletonList(
+                    "guest/Shadowing.sleep(J)V"
+            ), getSleepCalls(classLoader, shadowing));
+            assertEquals(Arrays.asList(
+                    "guest/SubShadowing.sleep(J)V",
+                    "net/sktemu/ams/AmsClock.guestSleep(JI)V"
+            ), getSleepCalls(classLoader, subShadowing));
+            assertEquals(Collections.singletonList(
+                    "guest/Plain.sleep(J)V"
+            ), getSleepCalls(classLoader, plain));
+        }
+    }
+
+    private AmsClassLoader createClassLoader() throws IOException, AmsException {
+        File jar = temporaryFolder.newFile("guest.jar");
+        try (JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar))) {
+            for (byte[] classFile : classFiles) {
+                stream.putNextEntry(new JarEntry(new ClassReader(classFile).getClassName() + ".class"));
+                stream.write(classFile);
+                stream.closeEntry();
+            }
+        }
+        return new AmsClassLoader(new TestAppModel(temporaryFolder.newFolder(), jar));
+    }
+
+    /**
+     * @param sleepCalls pairs of owner and descriptor of the sleep calls in the run method
+     */
+    private byte[] addClass(String name, String superName, boolean declaresSleep, String... sleepCalls) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, null);
+
+        if (declaresSleep) {
+            MethodVisitor sleep = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "sleep", "(J)V", null, null);
+            sleep.visitCode();
+            sleep.visitInsn(Opcodes.RETURN);
+            sleep.visitMaxs(0, 0);
+            sleep.visitEnd();
+        }
+
+        MethodVisitor run = writer.visitMethod(Opcodes.ACC_PUBLIC, "run", "()V", null, null);
+        run.visitCode();
+        for (int i = 0; i < sleepCalls.length; i += 2) {
+            run.visitLdcInsn(10L);
+            if (sleepCalls[i + 1].equals("(JI)V")) {
+                run.visitInsn(Opcodes.ICONST_0);
+            }
+            run.visitMethodInsn(Opcodes.INVOKESTATIC, sleepCalls[i], "sleep", sleepCalls[i + 1], false);
+        }
+        run.visitInsn(Opcodes.RETURN);
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+
+        writer.visitEnd();
+
+        byte[] classFile = writer.toByteArray();
+        classFiles.add(classFile);
+        return classFile;
+    }
+
+    private static List<String> getSleepCalls(AmsClassLoader classLoader, byte[] classFile) {
+        List<String> calls = new ArrayList<>();
+        new ClassReader(classLoader.getTransformPipeline().transform(classFile)).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (!name.equals("run")) return null;
+
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                        calls.add(owner + "." + name + descriptor);
+                    }
+                };
+            }
+        }, 0);
+        return calls;
+    }
+}
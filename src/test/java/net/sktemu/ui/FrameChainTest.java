@@ -0,0 +1,102 @@
+package net.sktemu.ui;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FrameChainTest {
+    private static final int WIDTH = 24;
+    private static final int HEIGHT = 18;
+
+    @Test
+    public void randomDamageSequence() {
+        FrameChain chain = new FrameChain(WIDTH, HEIGHT);
+        BufferedImage source = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] src = pixelsOf(source);
+        Random random = new Random(1);
+
+        int[] lastPublished = src.clone();
+        for (int frame = 1; frame <= 5000; frame++) {
+            Rectangle[] damage = new Rectangle[1 + random.nextInt(3)];
+            for (int i = 0; i < damage.length; i++) {
+                damage[i] = paintRandomRect(src, frame * 8 + i, random);
+            }
+            chain.publish(source, damage);
+            lastPublished = src.clone();
+
+            // the reader sometimes skips frames and sometimes paints twice without a new one
+            int reads = random.nextInt(3);
+            for (int i = 0; i < reads; i++) {
+                assertArrayEquals("frame " + frame, lastPublished, pixelsOf(chain.acquireFrontBuffer()));
+            }
+        }
+
+        assertArrayEquals(lastPublished, pixelsOf(chain.acquireFrontBuffer()));
+        assertEquals(5000, chain.getPublishedCount());
+        assertEquals(chain.getPublishedCount(), chain.getPresentedCount() + chain.getDroppedCount());
+    }
+
+    @Test
+    public void readerOnlySeesCompleteFrames() throws Exception {
+        int frames = 20000;
+        FrameChain chain = new FrameChain(WIDTH, HEIGHT);
+        BufferedImage source = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] src = pixelsOf(source);
+
+        // the frame number is in the first pixel, so the reader can tell which snapshot to expect
+        int[][] snapshots = new int[frames + 1][];
+        snapshots[0] = src.clone();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(2);
+            try {
+                for (int frame = 1; frame <= frames; frame++) {
+                    Rectangle rect = paintRandomRect(src, frame, random);
+                    src[0] = frame;
+                    snapshots[frame] = src.clone();
+                    chain.publish(source, new Rectangle[] {rect, new Rectangle(0, 0, 1, 1)});
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+
+        int lastFrame = 0;
+        while (lastFrame < frames && failure.get() == null) {
+            int[] front = pixelsOf(chain.acquireFrontBuffer());
+            int frame = front[0];
+            assertTrue("frames went backwards", frame >= lastFrame);
+            assertArrayEquals("frame " + frame, snapshots[frame], front);
+            lastFrame = frame;
+        }
+
+        writer.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static Rectangle paintRandomRect(int[] pixels, int value, Random random) {
+        int x = random.nextInt(WIDTH);
+        int y = random.nextInt(HEIGHT);
+        Rectangle rect = new Rectangle(x, y, 1 + random.nextInt(WIDTH - x), 1 + random.nextInt(HEIGHT - y));
+        for (int py = rect.y; py < rect.y + rect.height; py++) {
+            for (int px = rect.x; px < rect.x + rect.width; px++) {
+                pixels[py * WIDTH + px] = value;
+            }
+        }
+        return rect;
+    }
+
+    private static int[] pixelsOf(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,130 @@
+package net.sktemu.ui;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameScalerTest {
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 12;
+
+    // few colours, so that the Scale2x rules actually fire
+    private static final int[] COLORS = {0x000000, 0xFF0000, 0x00FF00};
+
+    @Test
+    public void incrementalRescaleMatchesFullRescale() throws Exception {
+        // integer factors, odd ones, and one large enough to be scaled in parallel tiles
+        int[][] outputSizes = {{WIDTH * 2, HEIGHT * 2}, {37, 29}, {WIDTH * 5, HEIGHT * 3}, {640, 560}};
+        for (int[] size : outputSizes) {
+            checkScaler(size[0], size[1], false);
+            checkScaler(size[0], size[1], true);
+        }
+    }
+
+    private void checkScaler(int outputWidth, int outputHeight, boolean scale2x) throws Exception {
+        String description = String.format("%dx%d%s", outputWidth, outputHeight, scale2x ? " with Scale2x" : "");
+        Random random = new Random(outputWidth * 31 + outputHeight);
+
+        FrameChain input = new FrameChain(WIDTH, HEIGHT);
+        BufferedImage source = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] src = pixelsOf(source);
+        for (int i = 0; i < src.length; i++) {
+            src[i] = COLORS[random.nextInt(COLORS.length)];
+        }
+
+        JPanel component = new JPanel();
+        component.setSize(outputWidth, outputHeight);
+        FrameScaler scaler = new FrameScaler(input, component, scale2x);
+
+        Rectangle[] damage = {new Rectangle(0, 0, WIDTH, HEIGHT)};
+        for (int frame = 0; frame < 40; frame++) {
+            input.publish(source, damage);
+            scaler.present(damage);
+            awaitOutput(scaler, fullRescale(src, outputWidth, outputHeight, scale2x), description + ", frame " + frame);
+
+            // small areas, often at the edges where the Scale2x neighbours are clamped
+            damage = new Rectangle[1 + random.nextInt(2)];
+            for (int i = 0; i < damage.length; i++) {
+                int x = random.nextInt(WIDTH);
+                int y = random.nextInt(HEIGHT);
+                damage[i] = new Rectangle(x, y, 1 + random.nextInt(Math.min(4, WIDTH - x)), 1 + random.nextInt(Math.min(4, HEIGHT - y)));
+                for (int py = damage[i].y; py < damage[i].y + damage[i].height; py++) {
+                    for (int px = damage[i].x; px < damage[i].x + damage[i].width; px++) {
+                        src[py * WIDTH + px] = COLORS[random.nextInt(COLORS.length)];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void awaitOutput(FrameScaler scaler, int[] expected, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        int[] actual = null;
+        while (System.nanoTime() < deadline) {
+            FrameChain output = scaler.getOutput();
+            if (output != null) {
+                actual = pixelsOf(output.acquireFrontBuffer()).clone();
+                if (Arrays.equals(expected, actual)) return;
+            }
+            Thread.sleep(1);
+        }
+        assertArrayEquals(description, expected, actual);
+    }
+
+    /**
+     * Nearest neighbour straight from its definition, after a Scale2x pass written from the EPX rules.
+     */
+    private static int[] fullRescale(int[] src, int outputWidth, int outputHeight, boolean scale2x) {
+        int srcWidth = WIDTH;
+        int srcHeight = HEIGHT;
+        if (scale2x) {
+            src = referenceScale2x(src);
+            srcWidth *= 2;
+            srcHeight *= 2;
+        }
+
+        int[] result = new int[outputWidth * outputHeight];
+        for (int y = 0; y < outputHeight; y++) {
+            for (int x = 0; x < outputWidth; x++) {
+                result[y * outputWidth + x] = src[y * srcHeight / outputHeight * srcWidth + x * srcWidth / outputWidth];
+            }
+        }
+        return result;
+    }
+
+    private static int[] referenceScale2x(int[] src) {
+        int[] dst = new int[WIDTH * 2 * HEIGHT * 2];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int p = src[y * WIDTH + x];
+                int a = pixelAt(src, x, y - 1);
+                int b = pixelAt(src, x + 1, y);
+                int c = pixelAt(src, x - 1, y);
+                int d = pixelAt(src, x, y + 1);
+
+                int pos = y * 2 * WIDTH * 2 + x * 2;
+                dst[pos] = c == a && c != d && a != b ? a : p;
+                dst[pos + 1] = a == b && a != c && b != d ? b : p;
+                dst[pos + WIDTH * 2] = d == c && d != b && c != a ? c : p;
+                dst[pos + WIDTH * 2 + 1] = b == d && b != a && d != c ? d : p;
+            }
+        }
+        return dst;
+    }
+
+    // outside pixels are copies of the nearest edge
+    private static int pixelAt(int[] src, int x, int y) {
+        return src[Math.max(0, Math.min(HEIGHT - 1, y)) * WIDTH + Math.max(0, Math.min(WIDTH - 1, x))];
+    }
+
+    private static int[] pixelsOf(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,149 @@
+package net.sktemu.ui.imageio;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LbmReaderTest {
+    // odd sizes leave a partial band of rows, the large one is decoded in parallel stripes
+    private static final int[][] SIZES = {{1, 1}, {13, 11}, {40, 16}, {150, 133}};
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void grayImagesMatchReference() throws IOException {
+        for (int[] size : SIZES) {
+            checkImage(2, size[0], size[1], false);
+            checkImage(2, size[0], size[1], true);
+        }
+    }
+
+    @Test
+    public void rgb332ImagesMatchReference() throws IOException {
+        for (int[] size : SIZES) {
+            checkImage(8, size[0], size[1], false);
+            checkImage(8, size[0], size[1], true);
+        }
+    }
+
+    private void checkImage(int bitDepth, int width, int height, boolean alpha) throws IOException {
+        int planeSize = (height + 7) / 8 * width;
+        byte[][] planes = new byte[bitDepth == 2 ? (alpha ? 3 : 2) : (alpha ? 2 : 1)][];
+        for (int i = 0; i < planes.length; i++) {
+            // the RGB332 plane has a byte per pixel, all others a bit
+            planes[i] = new byte[bitDepth == 8 && i == 0 ? width * height : planeSize];
+            random.nextBytes(planes[i]);
+        }
+        byte[] file = encode(bitDepth, width, height, alpha, planes);
+
+        int[] expected = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                expected[y * width + x] = referencePixel(bitDepth, width, alpha, planes, x, y);
+            }
+        }
+
+        String description = String.format("%d-bit %dx%d%s", bitDepth, width, height, alpha ? " with alpha" : "");
+
+        BufferedImage image = read(file, null);
+        assertEquals(description, alpha ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB, image.getType());
+        assertArrayEquals(description, expected, getArgb(image, alpha));
+
+        // a source region goes through setRGB instead of decoding into the raster
+        if (width > 2 && height > 2) {
+            ImageReadParam param = new ImageReadParam();
+            param.setSourceRegion(new Rectangle(1, 1, width - 2, height - 1));
+            BufferedImage region = read(file, param);
+
+            assertEquals(width - 2, region.getWidth());
+            assertEquals(height - 1, region.getHeight());
+            int[] regionPixels = getArgb(region, alpha);
+            for (int y = 0; y < height - 1; y++) {
+                for (int x = 0; x < width - 2; x++) {
+                    assertEquals(description + " region at " + x + ", " + y,
+                            expected[(y + 1) * width + x + 1], regionPixels[y * (width - 2) + x]);
+                }
+            }
+        }
+    }
+
+    private static BufferedImage read(byte[] file, ImageReadParam param) throws IOException {
+        ImageReader reader = new LbmReaderSpi().createReaderInstance();
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(file))) {
+            reader.setInput(stream);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static int[] getArgb(BufferedImage image, boolean alpha) {
+        int[] argb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        if (!alpha) return argb;
+
+        // the colour of a fully transparent pixel doesn't matter
+        for (int i = 0; i < argb.length; i++) {
+            if ((argb[i] >>> 24) == 0) {
+                argb[i] = 0;
+            }
+        }
+        return argb;
+    }
+
+    private static byte[] encode(int bitDepth, int width, int height, boolean alpha, byte[][] planes) {
+        int dataSize = 0;
+        for (byte[] plane : planes) {
+            dataSize += plane.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(24 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[] {'L', 'B', 'M', 'P'});
+        buffer.putInt(bitDepth);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putInt(planes[0].length);
+        buffer.putInt(alpha ? 1 : 0);
+        for (byte[] plane : planes) {
+            buffer.put(plane);
+        }
+        return buffer.array();
+    }
+
+    // one pixel at a time, the way the decoder did before it worked on whole columns
+    private static int referencePixel(int bitDepth, int width, boolean alpha, byte[][] planes, int x, int y) {
+        int bandIndex = x + (y >> 3) * width;
+        int bit = y & 7;
+
+        byte[] alphaPlane = alpha ? planes[planes.length - 1] : null;
+        if (alphaPlane != null && ((alphaPlane[bandIndex] >> bit) & 1) == 1) {
+            return 0;
+        }
+
+        if (bitDepth == 2) {
+            int level = ~((((planes[0][bandIndex] >>> bit) & 1) * 0xF0)
+                    | (((planes[1][bandIndex] >>> bit) & 1) * 0x0F)) & 0xFF;
+            return 0xFF000000 | (level << 16) | (level << 8) | level;
+        }
+
+        int color = planes[0][x + y * width];
+        int red = (color >>> 5) & 7;
+        int green = (color >>> 2) & 7;
+        int blue = color & 3;
+        return 0xFF000000
+                | ((red * 36 + (red >>> 1)) << 16)
+                | ((green * 36 + (green >>> 1)) << 8)
+                | (blue * 85);
+    }
+}
@@ -0,0 +1,98 @@
+package net.sktemu.ui.raster;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SoftRasterizerTest {
+    private static final int WIDTH = 48;
+    private static final int HEIGHT = 40;
+    private static final int COLOR = 0xFF123456;
+
+    @Test
+    public void clippedLinesMatchFullBresenham() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            int x1 = random.nextInt(160) - 56;
+            int y1 = random.nextInt(140) - 50;
+            int x2 = random.nextInt(160) - 56;
+            int y2 = random.nextInt(140) - 50;
+            int clipX1 = random.nextInt(WIDTH);
+            int clipY1 = random.nextInt(HEIGHT);
+            int clipX2 = clipX1 + random.nextInt(WIDTH - clipX1 + 1);
+            int clipY2 = clipY1 + random.nextInt(HEIGHT - clipY1 + 1);
+
+            SoftRasterizer rasterizer = newRasterizer();
+            rasterizer.drawLine(x1, y1, x2, y2, COLOR, clipX1, clipY1, clipX2, clipY2);
+
+            int[] expected = new int[WIDTH * HEIGHT];
+            drawReferenceLine(expected, x1, y1, x2, y2, clipX1, clipY1, clipX2, clipY2);
+
+            assertArrayEquals(String.format("line (%d, %d) - (%d, %d), clip (%d, %d) - (%d, %d)",
+                    x1, y1, x2, y2, clipX1, clipY1, clipX2, clipY2), expected, rasterizer.getPixels());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void extremeCoordinatesAreClipped() {
+        SoftRasterizer rasterizer = newRasterizer();
+        rasterizer.drawLine(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                COLOR, 0, 0, WIDTH, HEIGHT);
+        for (int i = 0; i < HEIGHT; i++) {
+            assertEquals(COLOR, rasterizer.getPixels()[i * WIDTH + i]);
+        }
+        assertEquals(HEIGHT, count(rasterizer.getPixels()));
+
+        rasterizer = newRasterizer();
+        rasterizer.drawLine(Integer.MIN_VALUE, 5, Integer.MAX_VALUE, 5, COLOR, 0, 0, WIDTH, HEIGHT);
+        rasterizer.drawLine(7, Integer.MAX_VALUE, 7, Integer.MIN_VALUE, COLOR, 0, 0, WIDTH, HEIGHT);
+        assertEquals(WIDTH + HEIGHT - 1, count(rasterizer.getPixels()));
+
+        // shallow enough that the closed form needs the wide fallback
+        rasterizer = newRasterizer();
+        rasterizer.drawLine(Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 3,
+                COLOR, 0, 0, WIDTH, HEIGHT);
+        assertTrue(count(rasterizer.getPixels()) <= WIDTH);
+    }
+
+    private static SoftRasterizer newRasterizer() {
+        return SoftRasterizer.forImage(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB));
+    }
+
+    private static int count(int[] pixels) {
+        return (int) Arrays.stream(pixels).filter(pixel -> pixel == COLOR).count();
+    }
+
+    // walks every step of the line, like the rasterizer used to
+    private static void drawReferenceLine(int[] pixels, int x1, int y1, int x2, int y2,
+                                          int clipX1, int clipY1, int clipX2, int clipY2) {
+        int dx = Math.abs(x2 - x1);
+        int dy = -Math.abs(y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        int error = dx + dy;
+
+        int x = x1;
+        int y = y1;
+        while (true) {
+            if (x >= clipX1 && x < clipX2 && y >= clipY1 && y < clipY2) {
+                pixels[y * WIDTH + x] = COLOR;
+            }
+            if (x == x2 && y == y2) break;
+
+            int error2 = error * 2;
+            if (error2 >= dy) {
+                error += dy;
+                x += sx;
+            }
+            if (error2 <= dx) {
+                error += dx;
+                y += sy;
+            }
+        }
+    }
+}
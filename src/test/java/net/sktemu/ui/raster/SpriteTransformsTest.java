@@ -0,0 +1,92 @@
+package net.sktemu.ui.raster;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+public class SpriteTransformsTest {
+    private static final int SOURCE_WIDTH = 11;
+    private static final int SOURCE_HEIGHT = 9;
+
+    @Test
+    public void transformsMatchTheirGeometricDefinition() {
+        BufferedImage source = new BufferedImage(SOURCE_WIDTH, SOURCE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < SOURCE_HEIGHT; y++) {
+            for (int x = 0; x < SOURCE_WIDTH; x++) {
+                source.setRGB(x, y, 0xFF000000 | (y << 8) | x);
+            }
+        }
+
+        // a region that doesn't touch the source edges and isn't square, so mixed up axes or offsets show
+        int regionX = 2;
+        int regionY = 3;
+        int w = 5;
+        int h = 4;
+
+        for (int transform = 0; transform < 8; transform++) {
+            BufferedImage result = SpriteTransforms.transform(source, regionX, regionY, w, h, transform);
+
+            boolean swap = SpriteTransforms.swapsAxes(transform);
+            assertEquals(swap ? h : w, result.getWidth());
+            assertEquals(swap ? w : h, result.getHeight());
+
+            for (int row = 0; row < h; row++) {
+                for (int column = 0; column < w; column++) {
+                    int[] destination = mapPixel(transform, column, row, w, h);
+                    assertEquals("transform " + transform + " at column " + column + ", row " + row,
+                            source.getRGB(regionX + column, regionY + row),
+                            result.getRGB(destination[0], destination[1]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void immutableRegionsAreCached() {
+        BufferedImage source = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage first = SpriteTransforms.transformImmutable(source, 1, 2, 3, 4, SpriteTransforms.TRANS_ROT90);
+        assertSame(first, SpriteTransforms.transformImmutable(source, 1, 2, 3, 4, SpriteTransforms.TRANS_ROT90));
+        assertNotSame(first, SpriteTransforms.transformImmutable(source, 1, 2, 3, 4, SpriteTransforms.TRANS_ROT270));
+    }
+
+    /**
+     * @return where a pixel of the region ends up, following the MIDP 2 Sprite definitions:
+     * the mirror is applied first, then the clockwise rotation
+     */
+    private static int[] mapPixel(int transform, int column, int row, int w, int h) {
+        int x = column;
+        int y = row;
+        int width = w;
+        int height = h;
+
+        boolean mirror;
+        int rotation;
+        switch (transform) {
+            case SpriteTransforms.TRANS_MIRROR: mirror = true; rotation = 0; break;
+            case SpriteTransforms.TRANS_ROT90: mirror = false; rotation = 90; break;
+            case SpriteTransforms.TRANS_ROT180: mirror = false; rotation = 180; break;
+            case SpriteTransforms.TRANS_ROT270: mirror = false; rotation = 270; break;
+            case SpriteTransforms.TRANS_MIRROR_ROT90: mirror = true; rotation = 90; break;
+            case SpriteTransforms.TRANS_MIRROR_ROT180: mirror = true; rotation = 180; break;
+            case SpriteTransforms.TRANS_MIRROR_ROT270: mirror = true; rotation = 270; break;
+            default: mirror = false; rotation = 0; break;
+        }
+
+        if (mirror) {
+            x = width - 1 - x;
+        }
+        for (int i = 0; i < rotation; i += 90) {
+            // a quarter turn clockwise
+            int rotatedX = height - 1 - y;
+            y = x;
+            x = rotatedX;
+            int swap = width;
+            width = height;
+            height = swap;
+        }
+        return new int[] {x, y};
+    }
+}